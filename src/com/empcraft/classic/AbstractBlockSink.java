@@ -0,0 +1,70 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+/**
+ * Cuboids and air fills in terms of single block writes, for sinks which have nothing faster
+ */
+public abstract class AbstractBlockSink implements BlockSink {
+    protected static final PlotBlock AIR = new PlotBlock((short) 0, (byte) 0);
+
+    /**
+     * Get which sections of a chunk are empty (have nothing but air)
+     */
+    protected abstract boolean[] getEmptySections(int cx, int cz);
+
+    @Override
+    public void setCuboid(final int x1, final int y1, final int z1, final int x2, final int y2, final int z2, final PlotBlock block) {
+        for (int y = y1; y < y2; y++) {
+            for (int x = x1; x < x2; x++) {
+                for (int z = z1; z < z2; z++) {
+                    setBlock(x, y, z, block.id, block.data);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setCuboid(final int x1, final int y1, final int z1, final int x2, final int y2, final int z2, final PlotBlock[] blocks) {
+        if (blocks.length == 1) {
+            setCuboid(x1, y1, z1, x2, y2, z2, blocks[0]);
+            return;
+        }
+        final PatternTile tile = PatternTile.get(blocks);
+        for (int y = y1; y < y2; y++) {
+            for (int x = x1; x < x2; x++) {
+                for (int z = z1; z < z2; z++) {
+                    final PlotBlock block = tile.getBlock(x, y, z);
+                    setBlock(x, y, z, block.id, block.data);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setAir(final int x1, final int y1, final int z1, final int x2, final int z2) {
+        final int height = getMaxHeight();
+        for (int x = x1; x < x2; x = (x & ~15) + 16) {
+            final int endX = Math.min(x2, (x & ~15) + 16);
+            for (int z = z1; z < z2; z = (z & ~15) + 16) {
+                final int endZ = Math.min(z2, (z & ~15) + 16);
+                final boolean[] empty = getEmptySections(x >> 4, z >> 4);
+                // Fill each run of sections which aren't empty in one go
+                int start = -1;
+                for (int y = Math.max(0, y1); y < height; y = (y & ~15) + 16) {
+                    if (empty[y >> 4]) {
+                        if (start != -1) {
+                            setCuboid(x, start, z, endX, y, endZ, AIR);
+                            start = -1;
+                        }
+                    } else if (start == -1) {
+                        start = y;
+                    }
+                }
+                if (start != -1) {
+                    setCuboid(x, start, z, endX, height, endZ, AIR);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.empcraft.classic;
+
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+
+/**
+ * Sets the biome of an area a chunk at a time: every column of a chunk is checked and set together, and each chunk
+ * which changed is sent to players once, rather than a resend per column.
+ */
+public class BiomeWriter {
+
+    /**
+     * Set the biome of the columns x1, z1 to x2, z2 (inclusive)
+     *
+     * @return the number of columns changed
+     */
+    public static int set(final World world, final int x1, final int z1, final int x2, final int z2, final Biome biome) {
+        int changed = 0;
+        for (int cx = x1 >> 4; cx <= (x2 >> 4); cx++) {
+            final int minX = Math.max(x1, cx << 4);
+            final int maxX = Math.min(x2, (cx << 4) + 15);
+            for (int cz = z1 >> 4; cz <= (z2 >> 4); cz++) {
+                final int minZ = Math.max(z1, cz << 4);
+                final int maxZ = Math.min(z2, (cz << 4) + 15);
+                int chunkChanged = 0;
+                for (int x = minX; x <= maxX; x++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        if (world.getBiome(x, z) != biome) {
+                            world.setBiome(x, z, biome);
+                            chunkChanged++;
+                        }
+                    }
+                }
+                if (chunkChanged > 0) {
+                    world.refreshChunk(cx, cz);
+                    changed += chunkChanged;
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,39 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+/**
+ * Somewhere to write blocks to: the world directly, a buffer which is applied to the world in one go, or an in-memory
+ * world for tests and benchmarks. All coordinates are world coordinates, and the max coordinates of cuboids are
+ * exclusive. Writes don't cause physics.
+ */
+public interface BlockSink {
+    /**
+     * The height of the world being written to
+     */
+    int getMaxHeight();
+
+    void setBlock(int x, int y, int z, int id, byte data);
+
+    /**
+     * Change the data value of a block, keeping its id
+     */
+    void setData(int x, int y, int z, byte data);
+
+    void setCuboid(int x1, int y1, int z1, int x2, int y2, int z2, PlotBlock block);
+
+    /**
+     * Set a cuboid from a palette - multi-block palettes use the palette's pattern tile, like the generator
+     */
+    void setCuboid(int x1, int y1, int z1, int x2, int y2, int z2, PlotBlock[] blocks);
+
+    /**
+     * Set everything from y1 to the top of the world to air, skipping sections which are already empty
+     */
+    void setAir(int x1, int y1, int z1, int x2, int z2);
+
+    /**
+     * Make sure everything written so far has reached the world
+     */
+    void flush();
+}
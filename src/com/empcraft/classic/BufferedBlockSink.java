@@ -0,0 +1,140 @@
+package com.empcraft.classic;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Collects writes per chunk and section, and applies them on flush: one chunk at a time, in section order, with only
+ * the last write to each block, and skipping blocks which already hold the right id and data (compared against a
+ * snapshot taken as the chunk is flushed).
+ */
+@SuppressWarnings("deprecation") public class BufferedBlockSink extends AbstractBlockSink {
+    /**
+     * Buffered entries are (id << 8) | (data << 4) | SET or DATA, 0 for nothing written
+     */
+    private static final int SET = 1;
+    private static final int DATA = 2;
+
+    private final World world;
+    private final int height;
+    private final HashMap<Long, int[][]> chunks = new HashMap<Long, int[][]>();
+
+    public BufferedBlockSink(final World world) {
+        this.world = world;
+        this.height = world.getMaxHeight();
+    }
+
+    private static long key(final int cx, final int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private int[] getSection(final int x, final int y, final int z) {
+        final long key = key(x >> 4, z >> 4);
+        int[][] chunk = this.chunks.get(key);
+        if (chunk == null) {
+            chunk = new int[this.height >> 4][];
+            this.chunks.put(key, chunk);
+        }
+        int[] section = chunk[y >> 4];
+        if (section == null) {
+            section = new int[4096];
+            chunk[y >> 4] = section;
+        }
+        return section;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setBlock(final int x, final int y, final int z, final int id, final byte data) {
+        if ((y < 0) || (y >= this.height)) {
+            return;
+        }
+        getSection(x, y, z)[((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF)] = (id << 8) | ((data & 0xF) << 4) | SET;
+    }
+
+    @Override
+    public void setData(final int x, final int y, final int z, final byte data) {
+        if ((y < 0) || (y >= this.height)) {
+            return;
+        }
+        final int[] section = getSection(x, y, z);
+        final int i = ((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF);
+        if ((section[i] & SET) != 0) {
+            section[i] = (section[i] & ~0xF0) | ((data & 0xF) << 4);
+        } else {
+            section[i] = ((data & 0xF) << 4) | DATA;
+        }
+    }
+
+    @Override
+    protected boolean[] getEmptySections(final int cx, final int cz) {
+        final ChunkSnapshot snapshot = this.world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false);
+        final int[][] chunk = this.chunks.get(key(cx, cz));
+        final boolean[] empty = new boolean[this.height >> 4];
+        for (int sy = 0; sy < empty.length; sy++) {
+            empty[sy] = snapshot.isSectionEmpty(sy) && ((chunk == null) || isAir(chunk[sy]));
+        }
+        return empty;
+    }
+
+    /**
+     * Check if nothing but air has been written to a section
+     */
+    private static boolean isAir(final int[] section) {
+        if (section != null) {
+            for (final int entry : section) {
+                if ((entry != 0) && ((entry >> 8) != 0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        final ArrayList<Long> keys = new ArrayList<Long>(this.chunks.keySet());
+        Collections.sort(keys);
+        for (final Long key : keys) {
+            final int cx = (int) (key >> 32);
+            final int cz = (int) key.longValue();
+            final int[][] sections = this.chunks.get(key);
+            final Chunk chunk = this.world.getChunkAt(cx, cz);
+            final ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+            for (int sy = 0; sy < sections.length; sy++) {
+                final int[] section = sections[sy];
+                if ((section == null) || (snapshot.isSectionEmpty(sy) && isAir(section))) {
+                    continue;
+                }
+                for (int i = 0; i < 4096; i++) {
+                    final int entry = section[i];
+                    if (entry == 0) {
+                        continue;
+                    }
+                    final int x = i & 0xF;
+                    final int y = (sy << 4) | (i >> 8);
+                    final int z = (i >> 4) & 0xF;
+                    final int id = entry >> 8;
+                    final byte data = (byte) ((entry >> 4) & 0xF);
+                    if ((entry & SET) != 0) {
+                        if ((snapshot.getBlockTypeId(x, y, z) != id) || (snapshot.getBlockData(x, y, z) != data)) {
+                            chunk.getBlock(x, y, z).setTypeIdAndData(id, data, false);
+                        }
+                    } else if (snapshot.getBlockData(x, y, z) != data) {
+                        chunk.getBlock(x, y, z).setData(data, false);
+                    }
+                }
+            }
+        }
+        this.chunks.clear();
+    }
+}
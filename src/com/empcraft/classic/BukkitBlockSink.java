@@ -0,0 +1,75 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+import com.intellectualcrafters.plot.util.PlotHelper;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * Writes straight to the world, a block at a time (cuboids of one block go through PlotHelper). Blocks are looked up
+ * through the last chunk written to, so runs of writes in one chunk don't go through the world's chunk map.
+ */
+@SuppressWarnings("deprecation") public class BukkitBlockSink extends AbstractBlockSink {
+    private final World world;
+    private Chunk chunk;
+    private int cx, cz;
+
+    public BukkitBlockSink(final World world) {
+        this.world = world;
+    }
+
+    private Block getBlock(final int x, final int y, final int z) {
+        if ((this.chunk == null) || ((x >> 4) != this.cx) || ((z >> 4) != this.cz)) {
+            this.cx = x >> 4;
+            this.cz = z >> 4;
+            this.chunk = this.world.getChunkAt(this.cx, this.cz);
+        }
+        return this.chunk.getBlock(x & 0xF, y, z & 0xF);
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return this.world.getMaxHeight();
+    }
+
+    @Override
+    public void setBlock(final int x, final int y, final int z, final int id, final byte data) {
+        getBlock(x, y, z).setTypeIdAndData(id, data, false);
+    }
+
+    @Override
+    public void setData(final int x, final int y, final int z, final byte data) {
+        getBlock(x, y, z).setData(data, false);
+    }
+
+    @Override
+    public void setCuboid(final int x1, final int y1, final int z1, final int x2, final int y2, final int z2, final PlotBlock block) {
+        if ((x2 <= x1) || (y2 <= y1) || (z2 <= z1)) {
+            return;
+        }
+        final Location pos1 = new Location(this.world, x1, y1, z1);
+        final Location pos2 = new Location(this.world, x2, y2, z2);
+        if (block.data == 0) {
+            PlotHelper.setSimpleCuboid(this.world, pos1, pos2, block);
+        } else {
+            PlotHelper.setCuboid(this.world, pos1, pos2, block);
+        }
+    }
+
+    @Override
+    protected boolean[] getEmptySections(final int cx, final int cz) {
+        final ChunkSnapshot snapshot = this.world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false);
+        final boolean[] empty = new boolean[this.world.getMaxHeight() >> 4];
+        for (int i = 0; i < empty.length; i++) {
+            empty[i] = snapshot.isSectionEmpty(i);
+        }
+        return empty;
+    }
+
+    @Override
+    public void flush() {
+    }
+}
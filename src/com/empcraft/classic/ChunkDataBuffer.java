@@ -0,0 +1,47 @@
+package com.empcraft.classic;
+
+/**
+ * The data values of one chunk, as 4 bit nibbles per 16x16x16 section (the same layout Anvil uses: index ((y & 0xF) <<
+ * 8) | (z << 4) | x, even indexes in the low nibble). Sections without any data stay null. Coordinates are local to
+ * the chunk.
+ */
+public class ChunkDataBuffer {
+    private final byte[][] sections;
+
+    public ChunkDataBuffer(final int sectionCount) {
+        this.sections = new byte[sectionCount][];
+    }
+
+    public void set(final int x, final int y, final int z, final byte val) {
+        if ((y >> 4) >= this.sections.length) {
+            return;
+        }
+        byte[] section = this.sections[y >> 4];
+        if (section == null) {
+            section = new byte[2048];
+            this.sections[y >> 4] = section;
+        }
+        final int i = ((y & 0xF) << 8) | (z << 4) | x;
+        final int shift = (i & 1) << 2;
+        section[i >> 1] = (byte) ((section[i >> 1] & ~(0xF << shift)) | ((val & 0xF) << shift));
+    }
+
+    public byte get(final int x, final int y, final int z) {
+        if ((y >> 4) >= this.sections.length) {
+            return 0;
+        }
+        final byte[] section = this.sections[y >> 4];
+        if (section == null) {
+            return 0;
+        }
+        final int i = ((y & 0xF) << 8) | (z << 4) | x;
+        return (byte) ((section[i >> 1] >> ((i & 1) << 2)) & 0xF);
+    }
+
+    /**
+     * Get the nibbles of a section, or null if it has no data. This is the buffer's own array.
+     */
+    public byte[] getSection(final int section) {
+        return section < this.sections.length ? this.sections[section] : null;
+    }
+}
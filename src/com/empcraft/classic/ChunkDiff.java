@@ -0,0 +1,145 @@
+package com.empcraft.classic;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Resets part of a chunk (a plot's columns within it) to its template, writing only the blocks which differ. Running
+ * the unit takes a snapshot of the chunk; the comparison is done on a worker thread, and the blocks which differ come
+ * back to the job as units of positions to set. Sections which are empty in both the snapshot and the template (the
+ * sky, mostly) are skipped without looking at them.
+ * <p/>
+ * The changes are applied ticks after the snapshot was taken, so each position remembers what the snapshot held there,
+ * and a block which no longer holds that (e.g. a player changed it in between) is left alone rather than overwritten.
+ * The diff itself sets nothing - the job counts the blocks in the units which come back from it.
+ */
+@SuppressWarnings("deprecation") public class ChunkDiff extends WorkUnit {
+    private final WorkJob job;
+    private final ChunkTemplate template;
+    private final int x1, z1, x2, z2;
+    private final int height;
+
+    public ChunkDiff(final WorkJob job, final ChunkTemplate template, final int x1, final int z1, final int x2, final int z2, final int height) {
+        super(0);
+        this.job = job;
+        this.template = template;
+        this.x1 = x1;
+        this.z1 = z1;
+        this.x2 = x2;
+        this.z2 = z2;
+        this.height = height;
+    }
+
+    @Override
+    public void run() {
+        final ChunkSnapshot snapshot = this.job.world.getChunkAt(this.x1 >> 4, this.z1 >> 4).getChunkSnapshot(false, false, false);
+        this.job.fork();
+        WorkQueue.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ChunkDiff.this.job.deliver(split(diff(snapshot)));
+                } catch (final Throwable e) {
+                    ChunkDiff.this.job.fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the positions (y << 8 | z << 4 | x, local to the chunk) which don't match the template, each followed by what
+     * the snapshot holds there (id << 4 | data)
+     */
+    private int[] diff(final ChunkSnapshot snapshot) {
+        int[] changed = new int[512];
+        int count = 0;
+        final int lx1 = this.x1 & 0xF;
+        final int lz1 = this.z1 & 0xF;
+        final int lx2 = lx1 + (this.x2 - this.x1);
+        final int lz2 = lz1 + (this.z2 - this.z1);
+        for (int sy = 0; sy < (this.height >> 4); sy++) {
+            final CompactSection ids = sy < this.template.sections.length ? this.template.sections[sy] : null;
+            final byte[] data = sy < this.template.data.length ? this.template.data[sy] : null;
+            if ((ids == null) && snapshot.isSectionEmpty(sy)) {
+                continue;
+            }
+            for (int y = sy << 4; y < ((sy + 1) << 4); y++) {
+                for (int z = lz1; z < lz2; z++) {
+                    for (int x = lx1; x < lx2; x++) {
+                        final int i = ((y & 0xF) << 8) | (z << 4) | x;
+                        final int id = ids == null ? 0 : ids.get(i);
+                        final int val = data == null ? 0 : (data[i >> 1] >> ((i & 1) << 2)) & 0xF;
+                        final int oldId = snapshot.getBlockTypeId(x, y, z);
+                        final int oldVal = snapshot.getBlockData(x, y, z);
+                        if ((oldId != id) || (oldVal != val)) {
+                            if (count == changed.length) {
+                                changed = Arrays.copyOf(changed, count * 2);
+                            }
+                            changed[count++] = (y << 8) | (z << 4) | x;
+                            changed[count++] = (oldId << 4) | oldVal;
+                        }
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    private ArrayList<WorkUnit> split(final int[] changed) {
+        final ArrayList<WorkUnit> units = new ArrayList<WorkUnit>();
+        final int max = WorkQueue.getUnitBlocks() * 2;
+        for (int i = 0; i < changed.length; i += max) {
+            units.add(new Changes(this.job.world, this.template, this.x1 >> 4, this.z1 >> 4, changed, i, Math.min(changed.length, i + max)));
+        }
+        return units;
+    }
+
+    /**
+     * Some of the positions which differ in a chunk, set back to the template if they still hold what the snapshot did
+     */
+    private static class Changes extends WorkUnit {
+        private final World world;
+        private final ChunkTemplate template;
+        private final int cx, cz;
+        private final int[] positions;
+        private final int from, to;
+
+        private Changes(final World world, final ChunkTemplate template, final int cx, final int cz, final int[] positions, final int from, final int to) {
+            super((to - from) >> 1);
+            this.world = world;
+            this.template = template;
+            this.cx = cx;
+            this.cz = cz;
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void run() {
+            final Chunk chunk = this.world.getChunkAt(this.cx, this.cz);
+            for (int j = this.from; j < this.to; j += 2) {
+                final int position = this.positions[j];
+                final int old = this.positions[j + 1];
+                final int y = position >> 8;
+                final Block block = chunk.getBlock(position & 0xF, y, (position >> 4) & 0xF);
+                if ((block.getTypeId() != (old >> 4)) || (block.getData() != (old & 0xF))) {
+                    // Changed since the snapshot was taken
+                    continue;
+                }
+                final int section = y >> 4;
+                final int index = ((y & 0xF) << 8) | (position & 0xFF);
+                final CompactSection ids = section < this.template.sections.length ? this.template.sections[section] : null;
+                final byte[] data = section < this.template.data.length ? this.template.data[section] : null;
+                final short id = ids == null ? 0 : ids.get(index);
+                final byte val = data == null ? 0 : (byte) ((data[index >> 1] >> ((index & 1) << 2)) & 0xF);
+                block.setTypeIdAndData(id, val, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.empcraft.classic;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Chunk generation and population timings for one world: latency histograms, chunks per second and (where the JVM
+ * can measure it) the memory allocated per generated chunk. Each world's metrics are registered as an MBean under
+ * com.empcraft.classic:type=ChunkMetrics, and can be exported in the Prometheus text format.
+ */
+public class ChunkMetrics implements ChunkMetricsMBean {
+    private static final ConcurrentHashMap<String, ChunkMetrics> worlds = new ConcurrentHashMap<String, ChunkMetrics>();
+    /**
+     * HotSpot (and most other JVMs) can report the bytes allocated by a thread
+     */
+    private static final com.sun.management.ThreadMXBean allocation;
+
+    static {
+        com.sun.management.ThreadMXBean bean = null;
+        try {
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                bean = (com.sun.management.ThreadMXBean) threads;
+                if (!bean.isThreadAllocatedMemorySupported()) {
+                    bean = null;
+                } else if (!bean.isThreadAllocatedMemoryEnabled()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                }
+            }
+        } catch (final Throwable e) {
+            bean = null;
+        }
+        allocation = bean;
+    }
+
+    private final String world;
+    private final LatencyHistogram generate = new LatencyHistogram();
+    private final LatencyHistogram populate = new LatencyHistogram();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong measured = new AtomicLong();
+
+    private volatile double chunksPerSecond = 0;
+    private long sampleCount = 0;
+    private long sampleTime = System.nanoTime();
+
+    private ChunkMetrics(final String world) {
+        this.world = world;
+    }
+
+    /**
+     * Get (or create and register) the metrics for a world
+     */
+    public static ChunkMetrics get(final String world) {
+        ChunkMetrics metrics = worlds.get(world);
+        if (metrics == null) {
+            metrics = new ChunkMetrics(world);
+            final ChunkMetrics existing = worlds.putIfAbsent(world, metrics);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                final ObjectName name = getObjectName(world);
+                // Left behind by an earlier load of the plugin which wasn't disabled cleanly
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(metrics, name);
+            } catch (final JMException e) {
+                // Still recorded and exported, just not visible through JMX
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Unregister every world's MBean and forget the metrics (when the plugin is disabled, so a reload doesn't find
+     * them still registered, holding on to the old plugin's classes)
+     */
+    public static void unregisterAll() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final String world : worlds.keySet()) {
+            try {
+                final ObjectName name = getObjectName(world);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (final JMException e) {
+                // Nothing else to do about it
+            }
+        }
+        worlds.clear();
+    }
+
+    private static ObjectName getObjectName(final String world) throws MalformedObjectNameException {
+        return new ObjectName("com.empcraft.classic:type=ChunkMetrics,world=" + ObjectName.quote(world));
+    }
+
+    public static Collection<ChunkMetrics> getAll() {
+        return new ArrayList<ChunkMetrics>(worlds.values());
+    }
+
+    /**
+     * Get the bytes allocated by the current thread so far, or -1 if the JVM can't tell
+     */
+    public static long getAllocatedBytes() {
+        if (allocation == null) {
+            return -1;
+        }
+        return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Record a generated chunk
+     *
+     * @param allocatedBefore the result of getAllocatedBytes() before the chunk was generated
+     */
+    public void recordGenerate(final long nanos, final long allocatedBefore) {
+        this.generate.record(nanos);
+        if (allocatedBefore >= 0) {
+            final long after = getAllocatedBytes();
+            if (after >= allocatedBefore) {
+                this.allocated.addAndGet(after - allocatedBefore);
+                this.measured.incrementAndGet();
+            }
+        }
+    }
+
+    public void recordPopulate(final long nanos) {
+        this.populate.record(nanos);
+    }
+
+    /**
+     * Work out the chunks generated per second since the last sample
+     */
+    public synchronized void sample() {
+        final long now = System.nanoTime();
+        final long count = this.generate.getCount();
+        if (now > this.sampleTime) {
+            this.chunksPerSecond = ((count - this.sampleCount) * 1000000000.0) / (now - this.sampleTime);
+        }
+        this.sampleCount = count;
+        this.sampleTime = now;
+    }
+
+    @Override
+    public long getChunksGenerated() {
+        return this.generate.getCount();
+    }
+
+    @Override
+    public long getChunksPopulated() {
+        return this.populate.getCount();
+    }
+
+    @Override
+    public double getChunksPerSecond() {
+        return this.chunksPerSecond;
+    }
+
+    @Override
+    public long getAllocatedBytesPerChunk() {
+        final long count = this.measured.get();
+        return count == 0 ? -1 : this.allocated.get() / count;
+    }
+
+    private static long mean(final LatencyHistogram histogram) {
+        final long count = histogram.getCount();
+        return count == 0 ? 0 : histogram.getSum() / count / 1000;
+    }
+
+    @Override
+    public long getGenerateMean() {
+        return mean(this.generate);
+    }
+
+    @Override
+    public long getGenerate50th() {
+        return this.generate.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getGenerate99th() {
+        return this.generate.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getGenerateMax() {
+        return this.generate.getMax() / 1000;
+    }
+
+    @Override
+    public long getPopulateMean() {
+        return mean(this.populate);
+    }
+
+    @Override
+    public long getPopulate50th() {
+        return this.populate.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getPopulate99th() {
+        return this.populate.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getPopulateMax() {
+        return this.populate.getMax() / 1000;
+    }
+
+    /**
+     * A one line summary, for the console
+     */
+    @Override
+    public String dump() {
+        return String.format(Locale.ROOT, "%s: %d chunks (%.1f/s), generate mean %dus p50 %dus p99 %dus max %dus, populate mean %dus p50 %dus p99 %dus max %dus, %s bytes/chunk", this.world, getChunksGenerated(), getChunksPerSecond(), getGenerateMean(), getGenerate50th(), getGenerate99th(), getGenerateMax(), getPopulateMean(), getPopulate50th(), getPopulate99th(), getPopulateMax(), getAllocatedBytesPerChunk() < 0 ? "?" : String.valueOf(getAllocatedBytesPerChunk()));
+    }
+
+    /**
+     * Every world's metrics in the Prometheus text exposition format
+     */
+    public static String toPrometheus() {
+        final Collection<ChunkMetrics> all = getAll();
+        final StringBuilder out = new StringBuilder();
+        histogram(out, all, "classic_chunk_generate_seconds", "Time taken to generate a chunk", true);
+        histogram(out, all, "classic_chunk_populate_seconds", "Time taken to populate a chunk", false);
+        out.append("# HELP classic_chunks_per_second Chunks generated per second since the last export\n");
+        out.append("# TYPE classic_chunks_per_second gauge\n");
+        for (final ChunkMetrics metrics : all) {
+            out.append("classic_chunks_per_second{world=\"").append(label(metrics.world)).append("\"} ").append(String.format(Locale.ROOT, "%.3f", metrics.getChunksPerSecond())).append('\n');
+        }
+        out.append("# HELP classic_chunk_allocated_bytes Mean bytes allocated to generate a chunk\n");
+        out.append("# TYPE classic_chunk_allocated_bytes gauge\n");
+        for (final ChunkMetrics metrics : all) {
+            if (metrics.getAllocatedBytesPerChunk() >= 0) {
+                out.append("classic_chunk_allocated_bytes{world=\"").append(label(metrics.world)).append("\"} ").append(metrics.getAllocatedBytesPerChunk()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void histogram(final StringBuilder out, final Collection<ChunkMetrics> all, final String name, final String help, final boolean generate) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        for (final ChunkMetrics metrics : all) {
+            final LatencyHistogram histogram = generate ? metrics.generate : metrics.populate;
+            final String world = label(metrics.world);
+            // ~1us to ~1s, at the bucket boundaries just below powers of two, so the counts are exact
+            for (int shift = 10; shift <= 30; shift++) {
+                final long bound = (1L << shift) - 1;
+                out.append(name).append("_bucket{world=\"").append(world).append("\",le=\"").append(String.format(Locale.ROOT, "%.9f", bound / 1e9)).append("\"} ").append(histogram.getCountAtOrBelow(bound)).append('\n');
+            }
+            out.append(name).append("_bucket{world=\"").append(world).append("\",le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+            out.append(name).append("_sum{world=\"").append(world).append("\"} ").append(String.format(Locale.ROOT, "%.9f", histogram.getSum() / 1e9)).append('\n');
+            out.append(name).append("_count{world=\"").append(world).append("\"} ").append(histogram.getCount()).append('\n');
+        }
+    }
+
+    private static String label(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Write the Prometheus export to a file. It's written next to it first and then moved, so a scraper never reads a
+     * half written file.
+     */
+    public static void export(final File file) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), toPrometheus().getBytes(Charset.forName("UTF-8")));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,32 @@
+package com.empcraft.classic;
+
+/**
+ * JMX view of the generation metrics of one world (times are in microseconds)
+ */
+public interface ChunkMetricsMBean {
+    long getChunksGenerated();
+
+    long getChunksPopulated();
+
+    double getChunksPerSecond();
+
+    long getAllocatedBytesPerChunk();
+
+    long getGenerateMean();
+
+    long getGenerate50th();
+
+    long getGenerate99th();
+
+    long getGenerateMax();
+
+    long getPopulateMean();
+
+    long getPopulate50th();
+
+    long getPopulate99th();
+
+    long getPopulateMax();
+
+    String dump();
+}
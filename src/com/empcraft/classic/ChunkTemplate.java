@@ -0,0 +1,27 @@
+package com.empcraft.classic;
+
+/**
+ * The compiled blocks of a chunk phase: the ids of each section, and the data values as Anvil style nibble arrays
+ * (null where a section has no data). Both are shared between chunks and must not be modified.
+ */
+public final class ChunkTemplate {
+    public final CompactSection[] sections;
+    public final byte[][] data;
+    /**
+     * If any section has data
+     */
+    public final boolean hasData;
+
+    public ChunkTemplate(final CompactSection[] sections, final byte[][] data) {
+        this.sections = sections;
+        this.data = data;
+        boolean hasData = false;
+        for (final byte[] section : data) {
+            if (section != null) {
+                hasData = true;
+                break;
+            }
+        }
+        this.hasData = hasData;
+    }
+}
@@ -0,0 +1,176 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The classic layout repeats every (PLOT_WIDTH + ROAD_WIDTH) blocks, so the sections of a chunk only depend on where
+ * the chunk starts inside that repeating cell (its phase), not on its absolute coordinates. Each phase is compiled
+ * once and later chunks reuse the template. Templates may be requested from several generator threads at once.
+ * <p/>
+ * Templates are stored as CompactSections (a palette of ids and packed indexes), which is about a quarter of the
+ * memory of short[] sections, and are only expanded when a chunk is handed to Bukkit. Most sections are repeated many
+ * times (e.g. the sections below the plot height only change where a road or wall crosses the chunk), so identical
+ * sections are also interned and every template of a cache refers to the same instance. The data nibbles of each section are
+ * compiled in the same pass and interned the same way.
+ */
+public class ChunkTemplateCache {
+
+    /**
+     * Worlds with identical settings share the same templates, until no loaded world has those settings
+     */
+    private static final HashMap<String, ChunkTemplateCache> caches = new HashMap<String, ChunkTemplateCache>();
+    /**
+     * The settings (cache key) each world uses, so a cache can be dropped once no world uses it
+     */
+    private static final HashMap<String, String> worlds = new HashMap<String, String>();
+
+    /**
+     * Interned sections, shared by every template of this cache (and dropped with it)
+     */
+    private final ConcurrentHashMap<CompactSection, CompactSection> sections = new ConcurrentHashMap<CompactSection, CompactSection>();
+    /**
+     * Interned data nibbles
+     */
+    private final ConcurrentHashMap<NibbleKey, byte[]> nibbles = new ConcurrentHashMap<NibbleKey, byte[]>();
+    private final ConcurrentHashMap<Integer, ChunkTemplate> templates = new ConcurrentHashMap<Integer, ChunkTemplate>();
+    private final int size;
+
+    private ChunkTemplateCache(final int size) {
+        this.size = size;
+    }
+
+    public static synchronized ChunkTemplateCache getCache(final ClassicPlotWorld plotworld) {
+        final String key = update(plotworld);
+        ChunkTemplateCache cache = caches.get(key);
+        if (cache == null) {
+            cache = new ChunkTemplateCache(plotworld.PLOT_WIDTH + plotworld.ROAD_WIDTH);
+            caches.put(key, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Record a world's current settings (e.g. after its configuration is reloaded). The cache for its old settings is
+     * dropped if no other world uses it.
+     *
+     * @return the world's cache key
+     */
+    public static synchronized String update(final ClassicPlotWorld plotworld) {
+        final String key = getKey(plotworld);
+        final String previous = worlds.put(plotworld.worldname, key);
+        if ((previous != null) && !previous.equals(key) && !worlds.containsValue(previous)) {
+            caches.remove(previous);
+        }
+        return key;
+    }
+
+    /**
+     * Forget a world (e.g. when it's unloaded). Its cache is dropped if no other world uses it - builders which
+     * already have it keep working, they just aren't shared any more.
+     */
+    public static synchronized void release(final String world) {
+        final String key = worlds.remove(world);
+        if ((key != null) && !worlds.containsValue(key)) {
+            caches.remove(key);
+        }
+    }
+
+    /**
+     * Every setting which has an effect on the generated blocks
+     */
+    private static String getKey(final ClassicPlotWorld plotworld) {
+        final StringBuilder key = new StringBuilder();
+        key.append(plotworld.PLOT_WIDTH).append(',').append(plotworld.ROAD_WIDTH).append(',');
+        key.append(plotworld.PLOT_HEIGHT).append(',').append(plotworld.ROAD_HEIGHT).append(',').append(plotworld.WALL_HEIGHT).append(',');
+        key.append(plotworld.ROAD_STRIPES_ENABLED).append(',').append(plotworld.TABLE_LAYOUT);
+        appendBlocks(key, plotworld.MAIN_BLOCK);
+        appendBlocks(key, plotworld.TOP_BLOCK);
+        appendBlocks(key, plotworld.WALL_BLOCK, plotworld.WALL_FILLING, plotworld.ROAD_BLOCK, plotworld.ROAD_STRIPES);
+        return key.toString();
+    }
+
+    private static void appendBlocks(final StringBuilder key, final PlotBlock... blocks) {
+        key.append('|');
+        for (final PlotBlock block : blocks) {
+            key.append(block.id).append(':').append(block.data).append(',');
+        }
+    }
+
+    /**
+     * Get the compiled template for a chunk phase, or null if it hasn't been compiled yet
+     */
+    public ChunkTemplate get(final int phaseX, final int phaseZ) {
+        return this.templates.get((phaseX * this.size) + phaseZ);
+    }
+
+    /**
+     * Store a compiled template, compacting and interning its sections. If another thread compiled the same phase
+     * first, its template is kept and returned.
+     */
+    public ChunkTemplate put(final int phaseX, final int phaseZ, final short[][] ids, final ChunkDataBuffer data) {
+        final CompactSection[] compact = new CompactSection[ids.length];
+        final byte[][] nibbleSections = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != null) {
+                compact[i] = intern(CompactSection.compact(ids[i]));
+            }
+            final byte[] section = data.getSection(i);
+            if (section != null) {
+                nibbleSections[i] = intern(section);
+            }
+        }
+        final ChunkTemplate template = new ChunkTemplate(compact, nibbleSections);
+        final ChunkTemplate existing = this.templates.putIfAbsent((phaseX * this.size) + phaseZ, template);
+        return existing == null ? template : existing;
+    }
+
+    /**
+     * Get the shared copy of a section
+     */
+    public CompactSection intern(final CompactSection section) {
+        final CompactSection existing = this.sections.putIfAbsent(section, section);
+        return existing == null ? section : existing;
+    }
+
+    /**
+     * Get the shared copy of a section's data nibbles
+     */
+    public byte[] intern(final byte[] section) {
+        final byte[] existing = this.nibbles.putIfAbsent(new NibbleKey(section), section);
+        return existing == null ? section : existing;
+    }
+
+    /**
+     * Compares nibble arrays by their contents
+     */
+    private static final class NibbleKey {
+        private final byte[] nibbles;
+        private final int hash;
+
+        NibbleKey(final byte[] nibbles) {
+            this.nibbles = nibbles;
+            this.hash = Arrays.hashCode(nibbles);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof NibbleKey)) {
+                return false;
+            }
+            final NibbleKey other = (NibbleKey) obj;
+            return (this.hash == other.hash) && Arrays.equals(this.nibbles, other.nibbles);
+        }
+    }
+}
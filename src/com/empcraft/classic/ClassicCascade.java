@@ -0,0 +1,468 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+/**
+ * The cuboid cascade the generator and the populator used before the layout tables (see ClassicLayout). This is still
+ * the default, so chunks of existing worlds keep coming out exactly as they did - including the road and wall columns
+ * at chunk seams where the cascade disagrees with the plot geometry, the road stripes the generator placed at the wall
+ * height (and the populator gave data at the road height), and the palettes picked from a random seeded by the chunk
+ * coordinates.
+ * <p/>
+ * Unlike the old generator, all state is local to the call, so chunks can be built on several threads at once.
+ */
+public class ClassicCascade {
+    private static final PlotBlock BEDROCK = new PlotBlock((short) 7, (byte) 0);
+
+    final int plotsize;
+    final int pathsize;
+    final PlotBlock wall;
+    final PlotBlock wallfilling;
+    final PlotBlock floor1;
+    final PlotBlock floor2;
+    final int size;
+    final int roadheight;
+    final int wallheight;
+    final int plotheight;
+    final PlotBlock[] plotfloors;
+    final PlotBlock[] filling;
+    final boolean stripes;
+    final int pathWidthLower;
+    /**
+     * Highest y the cascade writes to
+     */
+    final int maxY;
+
+    public ClassicCascade(final ClassicPlotWorld plotworld) {
+        this.plotsize = plotworld.PLOT_WIDTH;
+        this.pathsize = plotworld.ROAD_WIDTH;
+
+        this.floor1 = plotworld.ROAD_BLOCK;
+        this.floor2 = plotworld.ROAD_STRIPES;
+
+        this.wallfilling = plotworld.WALL_FILLING;
+        this.size = this.pathsize + this.plotsize;
+        this.wall = plotworld.WALL_BLOCK;
+
+        this.plotfloors = plotworld.TOP_BLOCK;
+        this.filling = plotworld.MAIN_BLOCK;
+        this.wallheight = plotworld.WALL_HEIGHT;
+        this.roadheight = plotworld.ROAD_HEIGHT;
+        this.plotheight = plotworld.PLOT_HEIGHT;
+        this.stripes = plotworld.ROAD_STRIPES_ENABLED;
+
+        if ((this.pathsize % 2) == 0) {
+            this.pathWidthLower = (this.pathsize / 2) - 1;
+        } else {
+            this.pathWidthLower = this.pathsize / 2;
+        }
+        // One of the walls is drawn up to the road height rather than the wall height
+        this.maxY = Math.max(Math.max(this.plotheight, this.wallheight + 1), this.roadheight + 1);
+    }
+
+    /**
+     * Check if the blocks of a chunk depend on more than its phase (i.e. a palette has more than one block, so the
+     * random picks are different for every chunk)
+     */
+    public boolean isRandom() {
+        return (this.filling.length > 1) || (this.plotfloors.length > 1);
+    }
+
+    /**
+     * Write the ids the old generator placed in a chunk
+     */
+    public void generate(final short[][] result, final int cx, final int cz) {
+        cascade(new Pass(result, null, cx, cz), cx, cz);
+    }
+
+    /**
+     * Write the data values the old populator set in a chunk. Blocks without data are skipped, so they don't clear the
+     * data set by an earlier cuboid.
+     */
+    public void populate(final ChunkDataBuffer data, final int cx, final int cz) {
+        cascade(new Pass(null, data, cx, cz), cx, cz);
+    }
+
+    /**
+     * The output of one run of the cascade, and the random the palettes are picked with
+     */
+    private static final class Pass {
+        final short[][] result;
+        final ChunkDataBuffer data;
+        final XorShiftRandom random;
+
+        Pass(final short[][] result, final ChunkDataBuffer data, final int cx, final int cz) {
+            this.result = result;
+            this.data = data;
+            final int prime = 31;
+            int h = 1;
+            h = (prime * h) + cx;
+            h = (prime * h) + cz;
+            this.random = new XorShiftRandom(h);
+        }
+    }
+
+    private void setCuboidRegion(final Pass pass, final int x1, final int x2, final int y1, final int y2, final int z1, final int z2, final PlotBlock block) {
+        if ((pass.data != null) && (block.data == 0)) {
+            return;
+        }
+        for (int x = x1; x < x2; x++) {
+            for (int z = z1; z < z2; z++) {
+                for (int y = y1; y < y2; y++) {
+                    setBlock(pass, x, y, z, block);
+                }
+            }
+        }
+    }
+
+    private void setCuboidRegion(final Pass pass, final int x1, final int x2, final int y1, final int y2, final int z1, final int z2, final PlotBlock[] blocks) {
+        if (blocks.length == 1) {
+            setCuboidRegion(pass, x1, x2, y1, y2, z1, z2, blocks[0]);
+        } else {
+            for (int x = x1; x < x2; x++) {
+                for (int z = z1; z < z2; z++) {
+                    for (int y = y1; y < y2; y++) {
+                        final PlotBlock block = blocks[pass.random.random(blocks.length)];
+                        if ((pass.data == null) || (block.data != 0)) {
+                            setBlock(pass, x, y, z, block);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void setBlock(final Pass pass, final int x, final int y, final int z, final PlotBlock block) {
+        if (pass.data != null) {
+            // The old populator wrote through the world, so a cuboid which ran past the chunk set data in its
+            // neighbour - whether that stuck depended on the order chunks were populated in, so those are left out
+            if (((x | z) & ~0xF) == 0) {
+                pass.data.set(x, y, z, block.data);
+            }
+            return;
+        }
+        final short[][] result = pass.result;
+        if (result[y >> 4] == null) {
+            result[y >> 4] = new short[4096];
+        }
+        result[y >> 4][((y & 0xF) << 8) | (z << 4) | x] = block.id;
+    }
+
+    /**
+     * The generator and the populator ran the same cuboids, except that the generator placed the stripes at the wall
+     * height and filled the plots before the walls, and the populator did it the other way round
+     */
+    private void cascade(final Pass pass, int cx, int cz) {
+        final boolean populate = pass.data != null;
+        cx = (cx % this.size) + (8 * this.size);
+        cz = (cz % this.size) + (8 * this.size);
+        final int absX = (((cx * 16) + 16) - this.pathWidthLower - 1) + (8 * this.size);
+        final int absZ = (((cz * 16) + 16) - this.pathWidthLower - 1) + (8 * this.size);
+        final int plotMinX = absX % this.size;
+        final int plotMinZ = absZ % this.size;
+        int roadStartX = (plotMinX + this.pathsize);
+        int roadStartZ = (plotMinZ + this.pathsize);
+        if (roadStartX >= this.size) {
+            roadStartX -= this.size;
+        }
+        if (roadStartZ >= this.size) {
+            roadStartZ -= this.size;
+        }
+
+        // BOTTOM (1/1 cuboids)
+        if (!populate) {
+            setCuboidRegion(pass, 0, 16, 0, 1, 0, 16, BEDROCK);
+        }
+        // ROAD (0/24) The following is an inefficient placeholder as it is too
+        // much work to finish it
+        if ((this.pathsize > 16) && ((plotMinX > roadStartX) || (plotMinZ > roadStartZ)) && !((roadStartX < 16) && (roadStartZ < 16)) && (((roadStartX > 16) && (roadStartZ > 16)) || ((plotMinX > roadStartX) && (plotMinZ > roadStartZ)))) {
+            setCuboidRegion(pass, 0, 16, 1, this.roadheight + 1, 0, 16, this.floor1);
+            return;
+        }
+        if (((plotMinZ + 1) <= 16) || ((roadStartZ <= 16) && (roadStartZ > 0))) {
+            final int start = Math.max((16 - plotMinZ - this.pathsize) + 1, (16 - roadStartZ) + 1);
+            int end = Math.min(16 - plotMinZ - 1, (16 - roadStartZ) + this.pathsize);
+            if ((start >= 0) && (start <= 16) && (end < 0)) {
+                end = 16;
+            }
+            setCuboidRegion(pass, 0, 16, 1, this.roadheight + 1, Math.max(start, 0), Math.min(16, end), this.floor1);
+        }
+        if (((plotMinX + 1) <= 16) || ((roadStartX <= 16) && (roadStartX > 0))) {
+            final int start = Math.max((16 - plotMinX - this.pathsize) + 1, (16 - roadStartX) + 1);
+            int end = Math.min(16 - plotMinX - 1, (16 - roadStartX) + this.pathsize);
+            if ((start >= 0) && (start <= 16) && (end < 0)) {
+                end = 16;
+            }
+            setCuboidRegion(pass, Math.max(start, 0), Math.min(16, end), 1, this.roadheight + 1, 0, 16, this.floor1);
+        }
+
+        // ROAD STRIPES
+        final int stripeY = populate ? this.roadheight : this.wallheight;
+        if ((this.pathsize > 4) && this.stripes) {
+            if ((plotMinZ + 2) <= 16) {
+                final int value = (plotMinZ + 2);
+                int start, end;
+                if ((plotMinX + 2) <= 16) {
+                    start = 16 - plotMinX - 1;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartX - 1) <= 16) {
+                    end = (16 - roadStartX) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinX + 2) <= 16) || ((roadStartX - 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 0, end, stripeY, stripeY + 1, 16 - value, (16 - value) + 1, this.floor2); //
+                setCuboidRegion(pass, start, 16, stripeY, stripeY + 1, 16 - value, (16 - value) + 1, this.floor2); //
+            }
+            if ((plotMinX + 2) <= 16) {
+                final int value = (plotMinX + 2);
+                int start, end;
+                if ((plotMinZ + 2) <= 16) {
+                    start = 16 - plotMinZ - 1;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartZ - 1) <= 16) {
+                    end = (16 - roadStartZ) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinZ + 2) <= 16) || ((roadStartZ - 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 16 - value, (16 - value) + 1, stripeY, stripeY + 1, 0, end, this.floor2); //
+                setCuboidRegion(pass, 16 - value, (16 - value) + 1, stripeY, stripeY + 1, start, 16, this.floor2); //
+            }
+            if ((roadStartZ <= 16) && (roadStartZ > 1)) {
+                int start, end;
+                if ((plotMinX + 2) <= 16) {
+                    start = 16 - plotMinX - 1;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartX - 1) <= 16) {
+                    end = (16 - roadStartX) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinX + 2) <= 16) || ((roadStartX - 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 0, end, stripeY, stripeY + 1, (16 - roadStartZ) + 1, (16 - roadStartZ) + 2, this.floor2);
+                setCuboidRegion(pass, start, 16, stripeY, stripeY + 1, (16 - roadStartZ) + 1, (16 - roadStartZ) + 2, this.floor2);
+            }
+            if ((roadStartX <= 16) && (roadStartX > 1)) {
+                int start, end;
+                if ((plotMinZ + 2) <= 16) {
+                    start = 16 - plotMinZ - 1;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartZ - 1) <= 16) {
+                    end = (16 - roadStartZ) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinZ + 2) <= 16) || ((roadStartZ - 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, (16 - roadStartX) + 1, (16 - roadStartX) + 2, stripeY, stripeY + 1, 0, end, this.floor2); //
+                setCuboidRegion(pass, (16 - roadStartX) + 1, (16 - roadStartX) + 2, stripeY, stripeY + 1, start, 16, this.floor2); //
+            }
+        }
+
+        if (!populate) {
+            plot(pass, plotMinX, plotMinZ, roadStartX, roadStartZ);
+        }
+        // WALLS (16/16 cuboids)
+        if (this.pathsize > 0) {
+            if ((plotMinZ + 1) <= 16) {
+                int start, end;
+                if ((plotMinX + 2) <= 16) {
+                    start = 16 - plotMinX - 1;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartX - 1) <= 16) {
+                    end = (16 - roadStartX) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinX + 2) <= 16) || ((roadStartX - 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 0, end, 1, this.wallheight + 1, 16 - plotMinZ - 1, 16 - plotMinZ, this.wallfilling);
+                setCuboidRegion(pass, 0, end, this.wallheight + 1, this.wallheight + 2, 16 - plotMinZ - 1, 16 - plotMinZ, this.wall);
+                setCuboidRegion(pass, start, 16, 1, this.wallheight + 1, 16 - plotMinZ - 1, 16 - plotMinZ, this.wallfilling);
+                setCuboidRegion(pass, start, 16, this.wallheight + 1, this.wallheight + 2, 16 - plotMinZ - 1, 16 - plotMinZ, this.wall);
+            }
+            if ((plotMinX + 1) <= 16) {
+                int start, end;
+                if ((plotMinZ + 2) <= 16) {
+                    start = 16 - plotMinZ - 1;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartZ - 1) <= 16) {
+                    end = (16 - roadStartZ) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinZ + 2) <= 16) || ((roadStartZ - 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 16 - plotMinX - 1, 16 - plotMinX, 1, this.wallheight + 1, 0, end, this.wallfilling);
+                setCuboidRegion(pass, 16 - plotMinX - 1, 16 - plotMinX, this.wallheight + 1, this.wallheight + 2, 0, end, this.wall);
+                setCuboidRegion(pass, 16 - plotMinX - 1, 16 - plotMinX, 1, this.wallheight + 1, start, 16, this.wallfilling);
+                setCuboidRegion(pass, 16 - plotMinX - 1, 16 - plotMinX, this.wallheight + 1, this.wallheight + 2, start, 16, this.wall);
+            }
+            if ((roadStartZ <= 16) && (roadStartZ > 0)) {
+                int start, end;
+                if ((plotMinX + 1) <= 16) {
+                    start = 16 - plotMinX;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartX + 1) <= 16) {
+                    end = (16 - roadStartX) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinX + 1) <= 16) || (roadStartX <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 0, end, 1, this.wallheight + 1, 16 - roadStartZ, (16 - roadStartZ) + 1, this.wallfilling);
+                setCuboidRegion(pass, 0, end, this.wallheight + 1, this.wallheight + 2, 16 - roadStartZ, (16 - roadStartZ) + 1, this.wall);
+                setCuboidRegion(pass, start, 16, 1, this.wallheight + 1, 16 - roadStartZ, (16 - roadStartZ) + 1, this.wallfilling);
+                setCuboidRegion(pass, start, 16, this.wallheight + 1, this.wallheight + 2, 16 - roadStartZ, (16 - roadStartZ) + 1, this.wall);
+            }
+            if ((roadStartX <= 16) && (roadStartX > 0)) {
+                int start, end;
+                if ((plotMinZ + 1) <= 16) {
+                    start = 16 - plotMinZ;
+                } else {
+                    start = 16;
+                }
+                if ((roadStartZ + 1) <= 16) {
+                    end = (16 - roadStartZ) + 1;
+                } else {
+                    end = 0;
+                }
+                if (!(((plotMinZ + 1) <= 16) || ((roadStartZ + 1) <= 16))) {
+                    start = 0;
+                }
+                setCuboidRegion(pass, 16 - roadStartX, (16 - roadStartX) + 1, 1, this.wallheight + 1, 0, end, this.wallfilling);
+                setCuboidRegion(pass, 16 - roadStartX, (16 - roadStartX) + 1, this.wallheight + 1, this.roadheight + 2, 0, end, this.wall);
+                setCuboidRegion(pass, 16 - roadStartX, (16 - roadStartX) + 1, 1, this.wallheight + 1, start, 16, this.wallfilling);
+                setCuboidRegion(pass, 16 - roadStartX, (16 - roadStartX) + 1, this.wallheight + 1, this.wallheight + 2, start, 16, this.wall);
+            }
+        }
+        if (populate) {
+            plot(pass, plotMinX, plotMinZ, roadStartX, roadStartZ);
+        }
+    }
+
+    private void plot(final Pass pass, final int plotMinX, final int plotMinZ, final int roadStartX, final int roadStartZ) {
+        if (this.plotsize > 16) {
+            if (roadStartX <= 16) {
+                if (roadStartZ <= 16) {
+                    setCuboidRegion(pass, 0, 16 - roadStartX, 1, this.plotheight, 0, 16 - roadStartZ, this.filling);
+                    setCuboidRegion(pass, 0, 16 - roadStartX, this.plotheight, this.plotheight + 1, 0, 16 - roadStartZ, this.plotfloors);
+                }
+                if (plotMinZ <= 16) {
+                    setCuboidRegion(pass, 0, 16 - roadStartX, 1, this.plotheight, 16 - plotMinZ, 16, this.filling);
+                    setCuboidRegion(pass, 0, 16 - roadStartX, this.plotheight, this.plotheight + 1, 16 - plotMinZ, 16, this.plotfloors);
+                }
+            } else {
+                if (roadStartZ <= 16) {
+                    if (plotMinX > 16) {
+                        setCuboidRegion(pass, 0, 16, 1, this.plotheight, 0, 16 - roadStartZ, this.filling);
+                        setCuboidRegion(pass, 0, 16, this.plotheight, this.plotheight + 1, 0, 16 - roadStartZ, this.plotfloors);
+                    }
+                }
+            }
+            if (plotMinX <= 16) {
+                if (plotMinZ <= 16) {
+                    setCuboidRegion(pass, 16 - plotMinX, 16, 1, this.plotheight, 16 - plotMinZ, 16, this.filling);
+                    setCuboidRegion(pass, 16 - plotMinX, 16, this.plotheight, this.plotheight + 1, 16 - plotMinZ, 16, this.plotfloors);
+                } else {
+                    int z = 16 - roadStartZ;
+                    if (z < 0) {
+                        z = 16;
+                    }
+                    setCuboidRegion(pass, 16 - plotMinX, 16, 1, this.plotheight, 0, z, this.filling);
+                    setCuboidRegion(pass, 16 - plotMinX, 16, this.plotheight, this.plotheight + 1, 0, z, this.plotfloors);
+                }
+                if (roadStartZ <= 16) {
+                    setCuboidRegion(pass, 16 - plotMinX, 16, 1, this.plotheight, 0, 16 - roadStartZ, this.filling);
+                    setCuboidRegion(pass, 16 - plotMinX, 16, this.plotheight, this.plotheight + 1, 0, 16 - roadStartZ, this.plotfloors);
+                } else {
+                    if (roadStartX <= 16) {
+                        if (plotMinZ > 16) {
+                            int x = 16 - roadStartX;
+                            if (x < 0) {
+                                x = 16;
+                            }
+                            setCuboidRegion(pass, 0, x, 1, this.plotheight, 0, 16, this.filling);
+                            setCuboidRegion(pass, 0, x, this.plotheight, this.plotheight + 1, 0, 16, this.plotfloors);
+                        }
+                    }
+                }
+            } else {
+                if (plotMinZ <= 16) {
+                    if (roadStartX > 16) {
+                        int x = 16 - roadStartX;
+                        if (x < 0) {
+                            x = 16;
+                        }
+                        setCuboidRegion(pass, 0, x, 1, this.plotheight, 16 - plotMinZ, 16, this.filling);
+                        setCuboidRegion(pass, 0, x, this.plotheight, this.plotheight + 1, 16 - plotMinZ, 16, this.plotfloors);
+                    }
+                } else {
+                    if (roadStartZ > 16) {
+                        int x = 16 - roadStartX;
+                        if (x < 0) {
+                            x = 16;
+                        }
+                        int z = 16 - roadStartZ;
+                        if (z < 0) {
+                            z = 16;
+                        }
+                        if (roadStartX > 16) {
+                            setCuboidRegion(pass, 0, x, 1, this.plotheight, 0, z, this.filling);
+                            setCuboidRegion(pass, 0, x, this.plotheight, this.plotheight + 1, 0, z, this.plotfloors);
+                        } else {
+                            setCuboidRegion(pass, 0, x, 1, this.plotheight, 0, z, this.filling);
+                            setCuboidRegion(pass, 0, x, this.plotheight, this.plotheight + 1, 0, z, this.plotfloors);
+                        }
+                    }
+                }
+            }
+        } else {
+            if (roadStartX <= 16) {
+                if (roadStartZ <= 16) {
+                    setCuboidRegion(pass, 0, 16 - roadStartX, 1, this.plotheight, 0, 16 - roadStartZ, this.filling);
+                    setCuboidRegion(pass, 0, 16 - roadStartX, this.plotheight, this.plotheight + 1, 0, 16 - roadStartZ, this.plotfloors);
+                }
+                if (plotMinZ <= 16) {
+                    setCuboidRegion(pass, 0, 16 - roadStartX, 1, this.plotheight, 16 - plotMinZ, 16, this.filling);
+                    setCuboidRegion(pass, 0, 16 - roadStartX, this.plotheight, this.plotheight + 1, 16 - plotMinZ, 16, this.plotfloors);
+                }
+            }
+            if (plotMinX <= 16) {
+                if (plotMinZ <= 16) {
+                    setCuboidRegion(pass, 16 - plotMinX, 16, 1, this.plotheight, 16 - plotMinZ, 16, this.filling);
+                    setCuboidRegion(pass, 16 - plotMinX, 16, this.plotheight, this.plotheight + 1, 16 - plotMinZ, 16, this.plotfloors);
+                }
+                if (roadStartZ <= 16) {
+                    setCuboidRegion(pass, 16 - plotMinX, 16, 1, this.plotheight, 0, 16 - roadStartZ, this.filling);
+                    setCuboidRegion(pass, 16 - plotMinX, 16, this.plotheight, this.plotheight + 1, 0, 16 - roadStartZ, this.plotfloors);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+/**
+ * Builds the block sections of a chunk for a ClassicPlotWorld, with their data values in the same pass. Nothing here
+ * needs a World or a running server, so the same output can be produced by the generator, the populator and by
+ * offline tools.
+ * <p/>
+ * Unless the world opts into the layout tables (generator.table_layout), the blocks come from the old cuboid cascade,
+ * so existing worlds don't change. The cascade's chunks still only depend on their phase, and share templates the same
+ * way, except when a palette has several blocks - those are picked from a random seeded by the chunk coordinates.
+ */
+public class ClassicChunkBuilder {
+    private static final PlotBlock BEDROCK = new PlotBlock((short) 7, (byte) 0);
+
+    final int size;
+    final PlotBlock wall;
+    final PlotBlock wallfilling;
+    final PlotBlock floor1;
+    final PlotBlock floor2;
+    final int roadheight;
+    final int wallheight;
+    final int plotheight;
+    final PatternTile plotfloors;
+    final PatternTile filling;
+    /**
+     * Number of sections which can contain blocks - everything above is air, whatever the world height is
+     */
+    final int sections;
+    /**
+     * Column classification for the repeating plot cell
+     */
+    final ClassicLayout layout;
+    /**
+     * Compiled chunk templates, shared with every world using the same settings
+     */
+    final ChunkTemplateCache templates;
+    /**
+     * The old cuboid cascade, or null if the world uses the layout tables
+     */
+    final ClassicCascade cascade;
+    /**
+     * If any block which can be generated has a data value
+     */
+    final boolean hasData;
+
+    public ClassicChunkBuilder(final ClassicPlotWorld plotworld) {
+        this.size = plotworld.PLOT_WIDTH + plotworld.ROAD_WIDTH;
+
+        this.floor1 = plotworld.ROAD_BLOCK;
+        this.floor2 = plotworld.ROAD_STRIPES;
+
+        this.wallfilling = plotworld.WALL_FILLING;
+        this.wall = plotworld.WALL_BLOCK;
+
+        this.plotfloors = PatternTile.get(plotworld.TOP_BLOCK);
+        this.filling = PatternTile.get(plotworld.MAIN_BLOCK);
+        this.wallheight = plotworld.WALL_HEIGHT;
+        this.roadheight = plotworld.ROAD_HEIGHT;
+        this.plotheight = plotworld.PLOT_HEIGHT;
+
+        this.layout = new ClassicLayout(plotworld);
+        this.cascade = plotworld.TABLE_LAYOUT ? null : new ClassicCascade(plotworld);
+        if (this.cascade != null) {
+            this.sections = (this.cascade.maxY >> 4) + 1;
+        } else {
+            this.sections = (Math.max(Math.max(this.plotheight, this.wallheight + 1), this.roadheight) >> 4) + 1;
+        }
+        this.templates = ChunkTemplateCache.getCache(plotworld);
+
+        boolean hasData = hasData(plotworld.MAIN_BLOCK) || hasData(plotworld.TOP_BLOCK);
+        if (plotworld.ROAD_WIDTH > 0) {
+            hasData |= hasData(this.floor1, this.wall, this.wallfilling);
+            if ((plotworld.ROAD_WIDTH > 4) && plotworld.ROAD_STRIPES_ENABLED) {
+                hasData |= hasData(this.floor2);
+            }
+        }
+        if (this.cascade != null) {
+            // The cascade can place road blocks at some seams even without a road
+            hasData |= hasData(this.floor1);
+        }
+        this.hasData = hasData;
+    }
+
+    private static boolean hasData(final PlotBlock... blocks) {
+        for (final PlotBlock block : blocks) {
+            if (block.data != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if any generated block has a data value - if not, there's nothing for the populator to do
+     */
+    public boolean hasData() {
+        return this.hasData;
+    }
+
+    /**
+     * Get the template (ids and data) for a chunk's phase, compiling it if this is the first chunk with that phase.
+     * Only the populated sections are included.
+     */
+    public ChunkTemplate getTemplate(final int cx, final int cz) {
+        if ((this.cascade != null) && this.cascade.isRandom()) {
+            return compile(cx, cz);
+        }
+        final int phaseX = this.layout.getPhase(cx);
+        final int phaseZ = this.layout.getPhase(cz);
+        final ChunkTemplate template = this.templates.get(phaseX, phaseZ);
+        if (template != null) {
+            return template;
+        }
+        // Templates only cover the populated sections, so they are the same for every world height
+        final short[][] ids = new short[this.sections][];
+        final ChunkDataBuffer data = new ChunkDataBuffer(this.sections);
+        generate(ids, data, cx, cz);
+        return this.templates.put(phaseX, phaseZ, ids, data);
+    }
+
+    /**
+     * Compile the template of a single chunk, without caching or interning it (every chunk is different)
+     */
+    private ChunkTemplate compile(final int cx, final int cz) {
+        final short[][] ids = new short[this.sections][];
+        final ChunkDataBuffer data = new ChunkDataBuffer(this.sections);
+        generate(ids, data, cx, cz);
+        final CompactSection[] sections = new CompactSection[this.sections];
+        final byte[][] nibbles = new byte[this.sections][];
+        for (int i = 0; i < this.sections; i++) {
+            if (ids[i] != null) {
+                sections[i] = CompactSection.compact(ids[i]);
+            }
+            nibbles[i] = data.getSection(i);
+        }
+        return new ChunkTemplate(sections, nibbles);
+    }
+
+    private void generate(final short[][] ids, final ChunkDataBuffer data, final int cx, final int cz) {
+        if (this.cascade != null) {
+            this.cascade.generate(ids, cx, cz);
+            this.cascade.populate(data, cx, cz);
+        } else {
+            generateLayout(ids, data, cx, cz);
+        }
+    }
+
+    /**
+     * Get the sections for a chunk, expanded to short[] as the Bukkit API expects. Sections above the populated ones
+     * are left null (air), and anything above a low world's height is cut off. The sections are shared with every
+     * other chunk using them and must not be modified - only the outer array is new.
+     *
+     * @param sectionCount the number of sections in the world (max height / 16)
+     */
+    public short[][] getSections(final int cx, final int cz, final int sectionCount) {
+        if ((this.cascade != null) && this.cascade.isRandom()) {
+            // Nothing is shared, so the sections don't need to go through a template
+            final short[][] ids = new short[this.sections][];
+            this.cascade.generate(ids, cx, cz);
+            final short[][] result = new short[sectionCount][];
+            System.arraycopy(ids, 0, result, 0, Math.min(this.sections, sectionCount));
+            return result;
+        }
+        final CompactSection[] template = getTemplate(cx, cz).sections;
+        final short[][] result = new short[sectionCount][];
+        for (int i = Math.min(template.length, sectionCount) - 1; i >= 0; i--) {
+            if (template[i] != null) {
+                result[i] = template[i].expand();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fill part of a column with a single block
+     */
+    private void setColumn(final short[][] result, final ChunkDataBuffer data, final int x, final int z, final int y1, final int y2, final PlotBlock block) {
+        for (int y = y1; y < y2; y++) {
+            setBlock(result, data, x, y, z, block);
+        }
+    }
+
+    /**
+     * Fill part of a column from a palette's pattern tile
+     */
+    private void setColumn(final short[][] result, final ChunkDataBuffer data, final int x, final int z, final int y1, final int y2, final PatternTile tile) {
+        for (int y = y1; y < y2; y++) {
+            setBlock(result, data, x, y, z, tile.getBlock(x, y, z));
+        }
+    }
+
+    /**
+     * Standard setblock method for world generation
+     */
+    private void setBlock(final short[][] result, final ChunkDataBuffer data, final int x, final int y, final int z, final PlotBlock block) {
+        if (result[y >> 4] == null) {
+            result[y >> 4] = new short[4096];
+        }
+        result[y >> 4][((y & 0xF) << 8) | (z << 4) | x] = block.id;
+        if (block.data != 0) {
+            data.set(x, y, z, block.data);
+        }
+    }
+
+    /**
+     * Generate a chunk column by column from the layout tables, writing the ids into the result object and the data
+     * values into the data buffer. All state is local to the call, so chunks can be generated on several threads at
+     * once.
+     */
+    private void generateLayout(final short[][] result, final ChunkDataBuffer data, final int cx, final int cz) {
+        int rx = this.layout.getPhase(cx);
+        for (int x = 0; x < 16; x++) {
+            int rz = this.layout.getPhase(cz);
+            for (int z = 0; z < 16; z++) {
+                setBlock(result, data, x, 0, z, BEDROCK);
+                switch (this.layout.getColumn(rx, rz)) {
+                    case ClassicLayout.PLOT:
+                        setColumn(result, data, x, z, 1, this.plotheight, this.filling);
+                        setColumn(result, data, x, z, this.plotheight, this.plotheight + 1, this.plotfloors);
+                        break;
+                    case ClassicLayout.WALL:
+                        setColumn(result, data, x, z, 1, this.wallheight + 1, this.wallfilling);
+                        setBlock(result, data, x, this.wallheight + 1, z, this.wall);
+                        break;
+                    case ClassicLayout.STRIPE:
+                        setColumn(result, data, x, z, 1, this.roadheight, this.floor1);
+                        setBlock(result, data, x, this.roadheight, z, this.floor2);
+                        break;
+                    default:
+                        setColumn(result, data, x, z, 1, this.roadheight + 1, this.floor1);
+                        break;
+                }
+                if (++rz == this.size) {
+                    rz = 0;
+                }
+            }
+            if (++rx == this.size) {
+                rx = 0;
+            }
+        }
+    }
+}
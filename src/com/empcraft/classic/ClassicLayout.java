@@ -0,0 +1,117 @@
+package com.empcraft.classic;
+
+/**
+ * Lookup tables for the classic layout. Every offset within the repeating cell (PLOT_WIDTH + ROAD_WIDTH blocks) is
+ * classified once, so the generator and the populator only need two table lookups to know what a column is, instead
+ * of working out cuboid bounds for every chunk. The layout is the same along both axes, so one table serves x and z.
+ * <p/>
+ * The tables follow the geometry of getPlotIdAbs and setWall, which the old cuboid cascade didn't everywhere - some
+ * road and wall columns at chunk seams come out differently (for every layout, including the default 32/7). Chunks
+ * generated from the tables wouldn't line up at those columns with chunks generated before, so worlds only generate
+ * from them if they set generator.table_layout - the rest keep using the old cascade (see ClassicCascade). The tables
+ * are still used to look up plot ids either way.
+ */
+public class ClassicLayout {
+    public static final byte ROAD = 0;
+    public static final byte STRIPE = 1;
+    public static final byte WALL = 2;
+    public static final byte PLOT = 3;
+
+    /**
+     * Packed plot id for a location which is not inside a plot (see getPlotIdPacked)
+     */
+    public static final long ROAD_ID = Long.MIN_VALUE;
+
+    /**
+     * Column type for an (x offset type, z offset type) pair - roads win over walls, walls win over plots, and stripes
+     * are not drawn where two roads cross
+     */
+    private static final byte[][] COLUMNS = new byte[][]{{ROAD, ROAD, ROAD, ROAD}, {ROAD, ROAD, STRIPE, STRIPE}, {ROAD, STRIPE, WALL, WALL}, {ROAD, STRIPE, WALL, PLOT}};
+
+    /**
+     * The width of the repeating cell (plot + road)
+     */
+    public final int size;
+    /**
+     * Width of the road before the wall of a plot (0,0 is in the middle of a road)
+     */
+    public final int pathWidthLower;
+    /**
+     * Offset type for each offset within the cell
+     */
+    public final byte[] table;
+
+    public ClassicLayout(final ClassicPlotWorld plotworld) {
+        final int plotsize = plotworld.PLOT_WIDTH;
+        final int pathsize = plotworld.ROAD_WIDTH;
+        this.size = plotsize + pathsize;
+        if ((pathsize % 2) == 0) {
+            this.pathWidthLower = (pathsize / 2) - 1;
+        } else {
+            this.pathWidthLower = pathsize / 2;
+        }
+        this.table = new byte[this.size];
+        for (int i = 0; i < this.size; i++) {
+            if ((i > this.pathWidthLower) && (i <= (this.pathWidthLower + plotsize))) {
+                this.table[i] = PLOT;
+            }
+        }
+        if (pathsize == 0) {
+            return;
+        }
+        if ((pathsize > 4) && plotworld.ROAD_STRIPES_ENABLED) {
+            this.table[wrap(this.pathWidthLower - 1)] = STRIPE;
+            this.table[wrap(this.pathWidthLower + plotsize + 2)] = STRIPE;
+        }
+        this.table[wrap(this.pathWidthLower)] = WALL;
+        this.table[wrap(this.pathWidthLower + plotsize + 1)] = WALL;
+    }
+
+    private int wrap(final int offset) {
+        return ((offset % this.size) + this.size) % this.size;
+    }
+
+    /**
+     * Get the offset of the first block of a chunk within the cell
+     */
+    public int getPhase(final int chunk) {
+        return wrap(chunk << 4);
+    }
+
+    /**
+     * Get the offset of a world coordinate within the cell
+     */
+    public int getOffset(final int coord) {
+        return wrap(coord);
+    }
+
+    /**
+     * Get the cell a world coordinate is in (floor division by the cell size)
+     */
+    public int getCell(final int coord) {
+        return coord >= 0 ? coord / this.size : ~(~coord / this.size);
+    }
+
+    /**
+     * Get the id of the plot at a location, packed into a long (see PlotIds.pack), or ROAD_ID if the location is
+     * on a road or a wall. This doesn't allocate, and takes one division per axis.
+     */
+    public long getPlotIdPacked(final int x, final int z) {
+        final int dx = getCell(x);
+        if (this.table[x - (dx * this.size)] != PLOT) {
+            return ROAD_ID;
+        }
+        final int dz = getCell(z);
+        if (this.table[z - (dz * this.size)] != PLOT) {
+            return ROAD_ID;
+        }
+        return PlotIds.pack(dx + 1, dz + 1);
+    }
+
+    /**
+     * Get the column type at a pair of offsets within the cell
+     */
+    public byte getColumn(final int rx, final int rz) {
+        return COLUMNS[this.table[rx]][this.table[rz]];
+    }
+}
@@ -29,13 +29,35 @@ import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Biome;
-import org.bukkit.block.Block;
-import org.bukkit.plugin.Plugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 
 @SuppressWarnings("deprecation") public class ClassicPlotManager extends PlotManager {
 
+    /**
+     * The clears which are running, by plot
+     */
+    private static final HashMap<Plot, WorkJob> clears = new HashMap<Plot, WorkJob>();
+    /**
+     * Only write the blocks of a plot which differ from the generated ones when clearing it
+     */
+    private static boolean diffClears = true;
+
+    /**
+     * Write roads, walls and floors through a BufferedBlockSink
+     */
+    private static boolean buffered = true;
+
+    public static void setDiffClears(final boolean diffClears) {
+        ClassicPlotManager.diffClears = diffClears;
+    }
+
+    public static void setBuffered(final boolean buffered) {
+        ClassicPlotManager.buffered = buffered;
+    }
+
     /**
      * Default implementation of getting a plot at a given location For a simplified explanation of the math involved: -
      * Get the current coords - shift these numbers down to something relatable for a single plot (similar to reducing
@@ -45,49 +67,15 @@ import java.util.ArrayList;
      */
     @Override
     public PlotId getPlotIdAbs(final PlotWorld plotworld, final Location loc) {
-        final ClassicPlotWorld dpw = ((ClassicPlotWorld) plotworld);
-
-        // get x,z loc
-        int x = loc.getBlockX();
-        int z = loc.getBlockZ();
-
-        // get plot size
-        final int size = dpw.PLOT_WIDTH + dpw.ROAD_WIDTH;
-
-        // get size of path on bottom part, and top part of plot
-        // (As 0,0 is in the middle of a road, not the very start)
-        int pathWidthLower;
-        if ((dpw.ROAD_WIDTH % 2) == 0) {
-            pathWidthLower = (int) (Math.floor(dpw.ROAD_WIDTH / 2) - 1);
-        } else {
-            pathWidthLower = (int) Math.floor(dpw.ROAD_WIDTH / 2);
-        }
-
-        // calulating how many shifts need to be done
-        int dx = x / size;
-        int dz = z / size;
-        if (x < 0) {
-            dx--;
-            x += ((-dx) * size);
-        }
-        if (z < 0) {
-            dz--;
-            z += ((-dz) * size);
-        }
-
-        // reducing to first plot
-        final int rx = (x) % size;
-        final int rz = (z) % size;
+        return PlotIds.get(getPlotIdPacked(plotworld, loc.getBlockX(), loc.getBlockZ()));
+    }
 
-        // checking if road (return null if so)
-        final int end = pathWidthLower + dpw.PLOT_WIDTH;
-        final boolean northSouth = (rz <= pathWidthLower) || (rz > end);
-        final boolean eastWest = (rx <= pathWidthLower) || (rx > end);
-        if (northSouth || eastWest) {
-            return null;
-        }
-        // returning the plot id (based on the number of shifts required)
-        return new PlotId(dx + 1, dz + 1);
+    /**
+     * Get the id of the plot at a location (ignoring mega plots) packed into a long, or ClassicLayout.ROAD_ID if the
+     * location is on a road. Use PlotIds to unpack it. This doesn't allocate anything.
+     */
+    public long getPlotIdPacked(final PlotWorld plotworld, final int x, final int z) {
+        return ((ClassicPlotWorld) plotworld).getLayout().getPlotIdPacked(x, z);
     }
 
     /**
@@ -95,44 +83,43 @@ import java.util.ArrayList;
      */
     @Override
     public PlotId getPlotId(final PlotWorld plotworld, final Location loc) {
-        final ClassicPlotWorld dpw = ((ClassicPlotWorld) plotworld);
-
-        int x = loc.getBlockX();
-        int z = loc.getBlockZ();
-
         if (plotworld == null) {
             return null;
         }
-        final int size = dpw.PLOT_WIDTH + dpw.ROAD_WIDTH;
-        int pathWidthLower;
-        if ((dpw.ROAD_WIDTH % 2) == 0) {
-            pathWidthLower = (int) (Math.floor(dpw.ROAD_WIDTH / 2) - 1);
-        } else {
-            pathWidthLower = (int) Math.floor(dpw.ROAD_WIDTH / 2);
-        }
-
-        int dx = x / size;
-        int dz = z / size;
-
-        if (x < 0) {
-            dx--;
-            x += ((-dx) * size);
-        }
-        if (z < 0) {
-            dz--;
-            z += ((-dz) * size);
+        final ClassicPlotWorld dpw = ((ClassicPlotWorld) plotworld);
+        final ClassicLayout layout = dpw.getLayout();
+
+        final int x = loc.getBlockX();
+        final int z = loc.getBlockZ();
+        final int dx = layout.getCell(x);
+        final int dz = layout.getCell(z);
+
+        final int rx = x - (dx * layout.size);
+        final int rz = z - (dz * layout.size);
+        final boolean northSouth = layout.table[rz] != ClassicLayout.PLOT;
+        final boolean eastWest = layout.table[rx] != ClassicLayout.PLOT;
+
+        final MergeIndex index = MergeIndex.get(loc.getWorld());
+        if (index != null) {
+            // Roads belong to the plot on their south / east side
+            final int px = eastWest && (rx > layout.pathWidthLower) ? dx + 2 : dx + 1;
+            final int pz = northSouth && (rz > layout.pathWidthLower) ? dz + 2 : dz + 1;
+            if (northSouth && eastWest) {
+                return index.getIntersection(px, pz);
+            }
+            if (northSouth) {
+                return index.getNorthRoad(px, pz);
+            }
+            if (eastWest) {
+                return index.getWestRoad(px, pz);
+            }
+            return index.getBottom(px, pz);
         }
 
-        final int rx = (x) % size;
-        final int rz = (z) % size;
-
-        final int end = pathWidthLower + dpw.PLOT_WIDTH;
-
-        final boolean northSouth = (rz <= pathWidthLower) || (rz > end);
-        final boolean eastWest = (rx <= pathWidthLower) || (rx > end);
+        // A merge is in progress, so ask the plot map
         if (northSouth && eastWest) {
             // This means you are in the intersection
-            final PlotId id = PlayerFunctions.getPlotAbs(loc.add(dpw.ROAD_WIDTH, 0, dpw.ROAD_WIDTH));
+            final PlotId id = PlayerFunctions.getPlotAbs(loc.clone().add(dpw.ROAD_WIDTH, 0, dpw.ROAD_WIDTH));
             final Plot plot = PlotMain.getPlots(loc.getWorld()).get(id);
             if (plot == null) {
                 return null;
@@ -145,7 +132,7 @@ import java.util.ArrayList;
         if (northSouth) {
             // You are on a road running West to East (yeah, I named the var
             // poorly)
-            final PlotId id = PlayerFunctions.getPlotAbs(loc.add(0, 0, dpw.ROAD_WIDTH));
+            final PlotId id = PlayerFunctions.getPlotAbs(loc.clone().add(0, 0, dpw.ROAD_WIDTH));
             final Plot plot = PlotMain.getPlots(loc.getWorld()).get(id);
             if (plot == null) {
                 return null;
@@ -157,7 +144,7 @@ import java.util.ArrayList;
         }
         if (eastWest) {
             // This is the road separating an Eastern and Western plot
-            final PlotId id = PlayerFunctions.getPlotAbs(loc.add(dpw.ROAD_WIDTH, 0, 0));
+            final PlotId id = PlayerFunctions.getPlotAbs(loc.clone().add(dpw.ROAD_WIDTH, 0, 0));
             final Plot plot = PlotMain.getPlots(loc.getWorld()).get(id);
             if (plot == null) {
                 return null;
@@ -167,7 +154,7 @@ import java.util.ArrayList;
             }
             return null;
         }
-        final PlotId id = new PlotId(dx + 1, dz + 1);
+        final PlotId id = PlotIds.get(dx + 1, dz + 1);
         final Plot plot = PlotMain.getPlots(loc.getWorld()).get(id);
         if (plot == null) {
             return id;
@@ -177,12 +164,11 @@ import java.util.ArrayList;
 
     /**
      * Check if a location is inside a specific plot(non-Javadoc) - For this implementation, we don't need to do
-     * anything fancier than referring to getPlotIdAbs(...)
+     * anything fancier than comparing the packed id at that location
      */
     @Override
     public boolean isInPlotAbs(final PlotWorld plotworld, final Location loc, final PlotId plotid) {
-        final PlotId result = getPlotIdAbs(plotworld, loc);
-        return (result != null) && (result == plotid);
+        return getPlotIdPacked(plotworld, loc.getBlockX(), loc.getBlockZ()) == PlotIds.pack(plotid.x, plotid.y);
     }
 
     /**
@@ -225,362 +211,94 @@ import java.util.ArrayList;
      */
     @Override
     public boolean clearPlot(final World world, final Plot plot, final boolean isDelete) {
-        PlotHelper.runners.put(plot, 1);
-        final Plugin plugin = PlotMain.getMain();
-        Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-            @Override
-            public void run() {
-                PlotHelper.runners.remove(plot);
-            }
-        }, 90L);
+        clear(world, plot, isDelete);
+        return true;
+    }
+
+    /**
+     * Get the clear running for a plot, or null if there isn't one (main thread only)
+     */
+    public static WorkJob getClear(final Plot plot) {
+        return clears.get(plot);
+    }
+
+    /**
+     * Clear a plot. The returned job tracks the progress of the clear, can cancel it, and completes when the last
+     * block has been set - listeners can be added to it to do something with the plot straight after. Starting a clear
+     * cancels any clear already running for the plot.
+     */
+    public WorkJob clear(final World world, final Plot plot, final boolean isDelete) {
+        final WorkJob previous = clears.get(plot);
+        if (previous != null) {
+            previous.cancel(false);
+        }
 
         final ClassicPlotWorld dpw = ((ClassicPlotWorld) PlotMain.getWorldSettings(world));
 
         final Location pos1 = PlotHelper.getPlotBottomLoc(world, plot.id).add(1, 0, 1);
         final Location pos2 = PlotHelper.getPlotTopLoc(world, plot.id);
 
-        final PlotBlock[] plotfloor = dpw.TOP_BLOCK;
-        final PlotBlock[] filling = dpw.MAIN_BLOCK;
-
         // PlotBlock wall = dpw.WALL_BLOCK;
         final PlotBlock wall;
 
         if (isDelete) {
             wall = dpw.WALL_BLOCK;
+            // The plot has left the plot map, along with its merged roads
+            MergeIndex.update(world, Collections.singletonList(plot.id));
         } else {
             wall = dpw.CLAIMED_WALL_BLOCK;
         }
 
         final PlotBlock wall_filling = dpw.WALL_FILLING;
 
-        final Block block = world.getBlockAt(new Location(world, pos1.getBlockX() - 1, 1, pos1.getBlockZ()));
-        if ((block.getTypeId() != wall_filling.id) || (block.getData() != wall_filling.data)) {
-            setWallFilling(world, dpw, plot.id, wall_filling);
+        // The walls go through the wall queue - replacing any wall still waiting for this plot (e.g. from its claim) -
+        // and the job writes whatever of them is still waiting once the plot itself is done
+        setWallFilling(world, dpw, plot.id, wall_filling);
+        setWall(world, dpw, plot.id, wall);
+
+        // Everything below is queued, and done a few thousand blocks at a time within the tick budget
+        final WorkJob job = new WorkJob(world);
+
+        // Every column of the plot is reset to the generator's templates, chunk by chunk (chunks entirely inside the
+        // plot in one piece, the edges in strips) - either by comparing snapshots off the main thread and setting what
+        // changed, or by writing everything
+        if (diffClears) {
+            job.addTemplateDiff(dpw.getBuilder(), pos1.getBlockX(), pos1.getBlockZ(), pos2.getBlockX() + 1, pos2.getBlockZ() + 1);
+        } else {
+            job.addTemplate(dpw.getBuilder(), pos1.getBlockX(), pos1.getBlockZ(), pos2.getBlockX() + 1, pos2.getBlockZ() + 1);
         }
+        // The clear isn't done until the walls queued above are in place too
+        if (dpw.ROAD_WIDTH != 0) {
+            job.addWalls(pos1.getBlockX() - 1, pos1.getBlockZ() - 1, pos2.getBlockX() + 1, pos2.getBlockZ() + 1, dpw.WALL_HEIGHT + 2);
+        }
+        return submit(plot, job);
+    }
 
-        Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
+    /**
+     * Mark a plot as busy until its clear is done, and queue the clear
+     */
+    private static WorkJob submit(final Plot plot, final WorkJob job) {
+        clears.put(plot, job);
+        PlotHelper.runners.put(plot, 1);
+        job.addListener(new Runnable() {
             @Override
             public void run() {
-
-                final Block block = world.getBlockAt(new Location(world, pos1.getBlockX() - 1, dpw.WALL_HEIGHT + 1, pos1.getBlockZ()));
-                if ((block.getTypeId() != wall.id) || (block.getData() != wall.data)) {
-                    setWall(world, dpw, plot.id, wall);
+                // A newer clear of the same plot may have taken over
+                if (clears.get(plot) == job) {
+                    clears.remove(plot);
+                    PlotHelper.runners.remove(plot);
                 }
-
-                Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                    @Override
-                    public void run() {
-                        if ((pos2.getBlockX() - pos1.getBlockX()) < 48) {
-                            PlotHelper.setSimpleCuboid(world, new Location(world, pos1.getBlockX(), 0, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, 1, pos2.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, pos1.getBlockX(), dpw.PLOT_HEIGHT + 1, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, world.getMaxHeight() + 1, pos2.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setCuboid(world, new Location(world, pos1.getBlockX(), 1, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, dpw.PLOT_HEIGHT, pos2.getBlockZ() + 1), filling);
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, pos1.getBlockX(), dpw.PLOT_HEIGHT, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, pos2.getBlockZ() + 1), plotfloor);
-                                                }
-                                            }, 5L);
-                                        }
-                                    }, 5L);
-                                }
-                            }, 5L);
-                            return;
-                        }
-
-                        final int startX = (pos1.getBlockX() / 16) * 16;
-                        final int startZ = (pos1.getBlockZ() / 16) * 16;
-                        final int chunkX = 16 + pos2.getBlockX();
-                        final int chunkZ = 16 + pos2.getBlockZ();
-                        final Location l1 = PlotHelper.getPlotBottomLoc(world, plot.id);
-                        final Location l2 = PlotHelper.getPlotTopLoc(world, plot.id);
-                        final int plotMinX = l1.getBlockX() + 1;
-                        final int plotMinZ = l1.getBlockZ() + 1;
-                        final int plotMaxX = l2.getBlockX();
-                        final int plotMaxZ = l2.getBlockZ();
-                        Location mn = null;
-                        Location mx = null;
-                        for (int i = startX; i < chunkX; i += 16) {
-                            for (int j = startZ; j < chunkZ; j += 16) {
-                                final Plot plot1 = PlotHelper.getCurrentPlot(new Location(world, i, 0, j));
-                                if ((plot1 != null) && (!plot1.getId().equals(plot.getId()))) {
-                                    break;
-                                }
-                                final Plot plot2 = PlotHelper.getCurrentPlot(new Location(world, i + 15, 0, j));
-                                if ((plot2 != null) && (!plot2.getId().equals(plot.getId()))) {
-                                    break;
-                                }
-                                final Plot plot3 = PlotHelper.getCurrentPlot(new Location(world, i + 15, 0, j + 15));
-                                if ((plot3 != null) && (!plot3.getId().equals(plot.getId()))) {
-                                    break;
-                                }
-                                final Plot plot4 = PlotHelper.getCurrentPlot(new Location(world, i, 0, j + 15));
-                                if ((plot4 != null) && (!plot4.getId().equals(plot.getId()))) {
-                                    break;
-                                }
-                                final Plot plot5 = PlotHelper.getCurrentPlot(new Location(world, i + 15, 0, j + 15));
-                                if ((plot5 != null) && (!plot5.getId().equals(plot.getId()))) {
-                                    break;
-                                }
-                                if (mn == null) {
-                                    mn = new Location(world, Math.max(i - 1, plotMinX), 0, Math.max(j - 1, plotMinZ));
-                                    mx = new Location(world, Math.min(i + 16, plotMaxX), 0, Math.min(j + 16, plotMaxZ));
-                                } else if ((mx.getBlockZ() < (j + 15)) || (mx.getBlockX() < (i + 15))) {
-                                    mx = new Location(world, Math.min(i + 16, plotMaxX), 0, Math.min(j + 16, plotMaxZ));
-                                }
-                                world.regenerateChunk(i / 16, j / 16);
-                            }
-                        }
-
-                        final Location max = mx;
-                        final Location min = mn;
-
-                        if (min == null) {
-                            PlotHelper.setSimpleCuboid(world, new Location(world, pos1.getBlockX(), 0, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, 1, pos2.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, pos1.getBlockX(), dpw.PLOT_HEIGHT + 1, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, world.getMaxHeight() + 1, pos2.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setCuboid(world, new Location(world, pos1.getBlockX(), 1, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, dpw.PLOT_HEIGHT, pos2.getBlockZ() + 1), filling);
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, pos1.getBlockX(), dpw.PLOT_HEIGHT, pos1.getBlockZ()), new Location(world, pos2.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, pos2.getBlockZ() + 1), plotfloor);
-                                                }
-                                            }, 5L);
-                                        }
-                                    }, 5L);
-                                }
-                            }, 5L);
-                            return;
-                        } else {
-
-                            if (min.getBlockX() < plotMinX) {
-                                min.setX(plotMinX);
-                            }
-                            if (min.getBlockZ() < plotMinZ) {
-                                min.setZ(plotMinZ);
-                            }
-                            if (max.getBlockX() > plotMaxX) {
-                                max.setX(plotMaxX);
-                            }
-                            if (max.getBlockZ() > plotMaxZ) {
-                                max.setZ(plotMaxZ);
-                            }
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, plotMinX, 0, plotMinZ), new Location(world, min.getBlockX() + 1, 1, min.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, plotMinX, dpw.PLOT_HEIGHT + 1, plotMinZ), new Location(world, min.getBlockX() + 1, world.getMaxHeight() + 1, min.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, plotMinX, 1, plotMinZ), new Location(world, min.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, min.getBlockZ() + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, plotMinX, dpw.PLOT_HEIGHT, plotMinZ), new Location(world, min.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, min.getBlockZ() + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 21L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, min.getBlockX(), 0, plotMinZ), new Location(world, max.getBlockX() + 1, 1, min.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, min.getBlockX(), dpw.PLOT_HEIGHT + 1, plotMinZ), new Location(world, max.getBlockX() + 1, world.getMaxHeight() + 1, min.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, min.getBlockX(), 1, plotMinZ), new Location(world, max.getBlockX() + 1, dpw.PLOT_HEIGHT, min.getBlockZ() + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, min.getBlockX(), dpw.PLOT_HEIGHT, plotMinZ), new Location(world, max.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, min.getBlockZ() + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 25L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, max.getBlockX(), 0, plotMinZ), new Location(world, plotMaxX + 1, 1, min.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, max.getBlockX(), dpw.PLOT_HEIGHT + 1, plotMinZ), new Location(world, plotMaxX + 1, world.getMaxHeight() + 1, min.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, max.getBlockX(), 1, plotMinZ), new Location(world, plotMaxX + 1, dpw.PLOT_HEIGHT, min.getBlockZ() + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, max.getBlockX(), dpw.PLOT_HEIGHT, plotMinZ), new Location(world, plotMaxX + 1, dpw.PLOT_HEIGHT + 1, min.getBlockZ() + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 29L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, plotMinX, 0, min.getBlockZ()), new Location(world, min.getBlockX() + 1, 1, max.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, plotMinX, dpw.PLOT_HEIGHT + 1, min.getBlockZ()), new Location(world, min.getBlockX() + 1, world.getMaxHeight() + 1, max.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, plotMinX, 1, min.getBlockZ()), new Location(world, min.getBlockX() + 1, dpw.PLOT_HEIGHT, max.getBlockZ() + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, plotMinX, dpw.PLOT_HEIGHT, min.getBlockZ()), new Location(world, min.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, max.getBlockZ() + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 33L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, plotMinX, 0, max.getBlockZ()), new Location(world, min.getBlockX() + 1, 1, plotMaxZ + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, plotMinX, dpw.PLOT_HEIGHT + 1, max.getBlockZ()), new Location(world, min.getBlockX() + 1, world.getMaxHeight() + 1, plotMaxZ + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, plotMinX, 1, max.getBlockZ()), new Location(world, min.getBlockX() + 1, dpw.PLOT_HEIGHT, plotMaxZ + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, plotMinX, dpw.PLOT_HEIGHT, max.getBlockZ()), new Location(world, min.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, plotMaxZ + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 37L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, min.getBlockX(), 0, max.getBlockZ()), new Location(world, max.getBlockX() + 1, 1, plotMaxZ + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, min.getBlockX(), dpw.PLOT_HEIGHT + 1, max.getBlockZ()), new Location(world, max.getBlockX() + 1, world.getMaxHeight() + 1, plotMaxZ + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, min.getBlockX(), 1, max.getBlockZ()), new Location(world, max.getBlockX() + 1, dpw.PLOT_HEIGHT, plotMaxZ + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, min.getBlockX(), dpw.PLOT_HEIGHT, max.getBlockZ()), new Location(world, max.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, plotMaxZ + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 41L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, max.getBlockX(), 0, min.getBlockZ()), new Location(world, plotMaxX + 1, 1, max.getBlockZ() + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, max.getBlockX(), dpw.PLOT_HEIGHT + 1, min.getBlockZ()), new Location(world, plotMaxX + 1, world.getMaxHeight() + 1, max.getBlockZ() + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, max.getBlockX(), 1, min.getBlockZ()), new Location(world, plotMaxX + 1, dpw.PLOT_HEIGHT, max.getBlockZ() + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, max.getBlockX(), dpw.PLOT_HEIGHT, min.getBlockZ()), new Location(world, plotMaxX + 1, dpw.PLOT_HEIGHT + 1, max.getBlockZ() + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 45L);
-
-                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                @Override
-                                public void run() {
-                                    PlotHelper.setSimpleCuboid(world, new Location(world, max.getBlockX(), 0, max.getBlockZ()), new Location(world, plotMaxX + 1, 1, plotMaxZ + 1), new PlotBlock((short) 7, (byte) 0));
-                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            PlotHelper.setSimpleCuboid(world, new Location(world, max.getBlockX(), dpw.PLOT_HEIGHT + 1, max.getBlockZ()), new Location(world, plotMaxX + 1, world.getMaxHeight() + 1, plotMaxZ + 1), new PlotBlock((short) 0, (byte) 0));
-                                            Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    PlotHelper.setCuboid(world, new Location(world, max.getBlockX(), 1, max.getBlockZ()), new Location(world, plotMaxX + 1, dpw.PLOT_HEIGHT, plotMaxZ + 1), filling);
-                                                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
-                                                        @Override
-                                                        public void run() {
-                                                            PlotHelper.setCuboid(world, new Location(world, max.getBlockX(), dpw.PLOT_HEIGHT, max.getBlockZ()), new Location(world, plotMaxX + 1, dpw.PLOT_HEIGHT + 1, plotMaxZ + 1), plotfloor);
-                                                        }
-                                                    }, 1L);
-                                                }
-                                            }, 1L);
-                                        }
-                                    }, 1L);
-                                }
-                            }, 49L);
-                        }
-                    }
-                }, 20L);
             }
-        }, 20L);
-        return true;
+        });
+        return WorkQueue.submit(job);
+    }
+
+    /**
+     * Get something to write a world's blocks through - a buffer which is applied a chunk at a time and skips blocks
+     * which are already right, or straight to the world. Flush it when done.
+     */
+    public static BlockSink getSink(final World world) {
+        return buffered ? new BufferedBlockSink(world) : new BukkitBlockSink(world);
     }
 
     /**
@@ -597,7 +315,9 @@ import java.util.ArrayList;
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final Location pos1 = PlotHelper.getPlotBottomLoc(world, plotid).add(1, 0, 1);
         final Location pos2 = PlotHelper.getPlotTopLoc(world, plotid);
-        PlotHelper.setCuboid(world, new Location(world, pos1.getX(), dpw.PLOT_HEIGHT, pos1.getZ()), new Location(world, pos2.getX() + 1, dpw.PLOT_HEIGHT + 1, pos2.getZ() + 1), blocks);
+        final BlockSink sink = getSink(world);
+        sink.setCuboid(pos1.getBlockX(), dpw.PLOT_HEIGHT, pos1.getBlockZ(), pos2.getBlockX() + 1, dpw.PLOT_HEIGHT + 1, pos2.getBlockZ() + 1, blocks);
+        sink.flush();
         return true;
     }
 
@@ -610,40 +330,7 @@ import java.util.ArrayList;
         final Location bottom = PlotHelper.getPlotBottomLoc(w, plotid);
         final Location top = PlotHelper.getPlotTopLoc(w, plotid);
 
-        int x, z;
-
-        Block block;
-
-        z = bottom.getBlockZ();
-        for (x = bottom.getBlockX(); x < (top.getBlockX() + 1); x++) {
-            for (int y = 1; y <= dpw.WALL_HEIGHT; y++) {
-                block = w.getBlockAt(x, y, z);
-                PlotHelper.setBlock(block, plotblock);
-            }
-        }
-
-        x = top.getBlockX() + 1;
-        for (z = bottom.getBlockZ(); z < (top.getBlockZ() + 1); z++) {
-            for (int y = 1; y <= dpw.WALL_HEIGHT; y++) {
-                block = w.getBlockAt(x, y, z);
-                PlotHelper.setBlock(block, plotblock);
-            }
-        }
-
-        z = top.getBlockZ() + 1;
-        for (x = top.getBlockX() + 1; x > (bottom.getBlockX() - 1); x--) {
-            for (int y = 1; y <= dpw.WALL_HEIGHT; y++) {
-                block = w.getBlockAt(x, y, z);
-                PlotHelper.setBlock(block, plotblock);
-            }
-        }
-        x = bottom.getBlockX();
-        for (z = top.getBlockZ() + 1; z > (bottom.getBlockZ() - 1); z--) {
-            for (int y = 1; y <= dpw.WALL_HEIGHT; y++) {
-                block = w.getBlockAt(x, y, z);
-                PlotHelper.setBlock(block, plotblock);
-            }
-        }
+        WallQueue.get(w).queue(plotid, true, bottom.getBlockX(), bottom.getBlockZ(), top.getBlockX() + 1, top.getBlockZ() + 1, 1, dpw.WALL_HEIGHT + 1, plotblock);
         return true;
     }
 
@@ -656,29 +343,7 @@ import java.util.ArrayList;
         final Location bottom = PlotHelper.getPlotBottomLoc(w, plotid);
         final Location top = PlotHelper.getPlotTopLoc(w, plotid);
 
-        int x, z;
-
-        Block block;
-        z = bottom.getBlockZ();
-        for (x = bottom.getBlockX(); x < (top.getBlockX() + 1); x++) {
-            block = w.getBlockAt(x, dpw.WALL_HEIGHT + 1, z);
-            PlotHelper.setBlock(block, plotblock);
-        }
-        x = top.getBlockX() + 1;
-        for (z = bottom.getBlockZ(); z < (top.getBlockZ() + 1); z++) {
-            block = w.getBlockAt(x, dpw.WALL_HEIGHT + 1, z);
-            PlotHelper.setBlock(block, plotblock);
-        }
-        z = top.getBlockZ() + 1;
-        for (x = top.getBlockX() + 1; x > (bottom.getBlockX() - 1); x--) {
-            block = w.getBlockAt(x, dpw.WALL_HEIGHT + 1, z);
-            PlotHelper.setBlock(block, plotblock);
-        }
-        x = bottom.getBlockX();
-        for (z = top.getBlockZ() + 1; z > (bottom.getBlockZ() - 1); z--) {
-            block = w.getBlockAt(x, dpw.WALL_HEIGHT + 1, z);
-            PlotHelper.setBlock(block, plotblock);
-        }
+        WallQueue.get(w).queue(plotid, false, bottom.getBlockX(), bottom.getBlockZ(), top.getBlockX() + 1, top.getBlockZ() + 1, dpw.WALL_HEIGHT + 1, dpw.WALL_HEIGHT + 2, plotblock);
         return true;
     }
 
@@ -687,40 +352,22 @@ import java.util.ArrayList;
      */
     @Override
     public boolean setBiome(final World world, final Plot plot, final Biome biome) {
-
-        final int bottomX = PlotHelper.getPlotBottomLoc(world, plot.id).getBlockX() - 1;
-        final int topX = PlotHelper.getPlotTopLoc(world, plot.id).getBlockX() + 1;
-        final int bottomZ = PlotHelper.getPlotBottomLoc(world, plot.id).getBlockZ() - 1;
-        final int topZ = PlotHelper.getPlotTopLoc(world, plot.id).getBlockZ() + 1;
-
-        final Block block = world.getBlockAt(PlotHelper.getPlotBottomLoc(world, plot.id).add(1, 1, 1));
-        final Biome current = block.getBiome();
-        if (biome.equals(current)) {
-            return false;
-        }
-
-        for (int x = bottomX; x <= topX; x++) {
-            for (int z = bottomZ; z <= topZ; z++) {
-                final Block blk = world.getBlockAt(x, 0, z);
-                final Biome c = blk.getBiome();
-                if (c.equals(biome)) {
-                    x += 15;
-                    continue;
-                }
-                blk.setBiome(biome);
-            }
-        }
-        return true;
+        // The plot and its walls
+        final Location bottom = PlotHelper.getPlotBottomLoc(world, plot.id);
+        final Location top = PlotHelper.getPlotTopLoc(world, plot.id);
+        return BiomeWriter.set(world, bottom.getBlockX() - 1, bottom.getBlockZ() - 1, top.getBlockX() + 1, top.getBlockZ() + 1, biome) > 0;
     }
 
     /**
-     * PLOT MERGING
+     * PLOT MERGING - walls still waiting in the WallQueue for the area are written first, so they can't end up back on
+     * top of the roads
      */
 
     @Override
     public boolean createRoadEast(final PlotWorld plotworld, final Plot plot) {
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final World w = Bukkit.getWorld(plot.world);
+        final BlockSink sink = getSink(w);
 
         final Location pos1 = getPlotBottomLocAbs(plotworld, plot.id);
         final Location pos2 = getPlotTopLocAbs(plotworld, plot.id);
@@ -730,17 +377,19 @@ import java.util.ArrayList;
         final int sz = pos1.getBlockZ() - 1;
         final int ez = pos2.getBlockZ() + 2;
 
-        PlotHelper.setSimpleCuboid(w, new Location(w, sx, Math.min(dpw.WALL_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz + 1), new Location(w, ex + 1, 257 + 1, ez), new PlotBlock((short) 0, (byte) 0));
+        WallQueue.get(w).flush(sx, sz, ex, ez);
+        sink.setAir(sx, Math.min(dpw.WALL_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz + 1, ex + 1, ez);
 
-        PlotHelper.setCuboid(w, new Location(w, sx, 1, sz + 1), new Location(w, ex + 1, dpw.PLOT_HEIGHT, ez), new PlotBlock((short) 7, (byte) 0));
+        sink.setCuboid(sx, 1, sz + 1, ex + 1, dpw.PLOT_HEIGHT, ez, new PlotBlock((short) 7, (byte) 0));
 
-        PlotHelper.setCuboid(w, new Location(w, sx, 1, sz + 1), new Location(w, sx + 1, dpw.WALL_HEIGHT + 1, ez), dpw.WALL_FILLING);
-        PlotHelper.setCuboid(w, new Location(w, sx, dpw.WALL_HEIGHT + 1, sz + 1), new Location(w, sx + 1, dpw.WALL_HEIGHT + 2, ez), dpw.WALL_BLOCK);
+        sink.setCuboid(sx, 1, sz + 1, sx + 1, dpw.WALL_HEIGHT + 1, ez, dpw.WALL_FILLING);
+        sink.setCuboid(sx, dpw.WALL_HEIGHT + 1, sz + 1, sx + 1, dpw.WALL_HEIGHT + 2, ez, dpw.WALL_BLOCK);
 
-        PlotHelper.setCuboid(w, new Location(w, ex, 1, sz + 1), new Location(w, ex + 1, dpw.WALL_HEIGHT + 1, ez), dpw.WALL_FILLING);
-        PlotHelper.setCuboid(w, new Location(w, ex, dpw.WALL_HEIGHT + 1, sz + 1), new Location(w, ex + 1, dpw.WALL_HEIGHT + 2, ez), dpw.WALL_BLOCK);
+        sink.setCuboid(ex, 1, sz + 1, ex + 1, dpw.WALL_HEIGHT + 1, ez, dpw.WALL_FILLING);
+        sink.setCuboid(ex, dpw.WALL_HEIGHT + 1, sz + 1, ex + 1, dpw.WALL_HEIGHT + 2, ez, dpw.WALL_BLOCK);
 
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 1, sz + 1), new Location(w, ex, dpw.ROAD_HEIGHT + 1, ez), dpw.ROAD_BLOCK);
+        sink.setCuboid(sx + 1, 1, sz + 1, ex, dpw.ROAD_HEIGHT + 1, ez, dpw.ROAD_BLOCK);
+        sink.flush();
 
         return true;
     }
@@ -749,6 +398,7 @@ import java.util.ArrayList;
     public boolean createRoadSouth(final PlotWorld plotworld, final Plot plot) {
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final World w = Bukkit.getWorld(plot.world);
+        final BlockSink sink = getSink(w);
 
         final Location pos1 = getPlotBottomLocAbs(plotworld, plot.id);
         final Location pos2 = getPlotTopLocAbs(plotworld, plot.id);
@@ -758,17 +408,19 @@ import java.util.ArrayList;
         final int sx = pos1.getBlockX() - 1;
         final int ex = pos2.getBlockX() + 2;
 
-        PlotHelper.setSimpleCuboid(w, new Location(w, sx, Math.min(dpw.WALL_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz + 1), new Location(w, ex + 1, 257, ez), new PlotBlock((short) 0, (byte) 0));
+        WallQueue.get(w).flush(sx, sz, ex, ez);
+        sink.setAir(sx, Math.min(dpw.WALL_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz + 1, ex + 1, ez);
 
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 0, sz), new Location(w, ex, 1, ez + 1), new PlotBlock((short) 7, (byte) 0));
+        sink.setCuboid(sx + 1, 0, sz, ex, 1, ez + 1, new PlotBlock((short) 7, (byte) 0));
 
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 1, sz), new Location(w, ex, dpw.WALL_HEIGHT + 1, sz + 1), dpw.WALL_FILLING);
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, dpw.WALL_HEIGHT + 1, sz), new Location(w, ex, dpw.WALL_HEIGHT + 2, sz + 1), dpw.WALL_BLOCK);
+        sink.setCuboid(sx + 1, 1, sz, ex, dpw.WALL_HEIGHT + 1, sz + 1, dpw.WALL_FILLING);
+        sink.setCuboid(sx + 1, dpw.WALL_HEIGHT + 1, sz, ex, dpw.WALL_HEIGHT + 2, sz + 1, dpw.WALL_BLOCK);
 
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 1, ez), new Location(w, ex, dpw.WALL_HEIGHT + 1, ez + 1), dpw.WALL_FILLING);
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, dpw.WALL_HEIGHT + 1, ez), new Location(w, ex, dpw.WALL_HEIGHT + 2, ez + 1), dpw.WALL_BLOCK);
+        sink.setCuboid(sx + 1, 1, ez, ex, dpw.WALL_HEIGHT + 1, ez + 1, dpw.WALL_FILLING);
+        sink.setCuboid(sx + 1, dpw.WALL_HEIGHT + 1, ez, ex, dpw.WALL_HEIGHT + 2, ez + 1, dpw.WALL_BLOCK);
 
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 1, sz + 1), new Location(w, ex, dpw.ROAD_HEIGHT + 1, ez), dpw.ROAD_BLOCK);
+        sink.setCuboid(sx + 1, 1, sz + 1, ex, dpw.ROAD_HEIGHT + 1, ez, dpw.ROAD_BLOCK);
+        sink.flush();
 
         return true;
     }
@@ -777,6 +429,7 @@ import java.util.ArrayList;
     public boolean createRoadSouthEast(final PlotWorld plotworld, final Plot plot) {
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final World w = Bukkit.getWorld(plot.world);
+        final BlockSink sink = getSink(w);
 
         final Location pos2 = getPlotTopLocAbs(plotworld, plot.id);
 
@@ -785,9 +438,11 @@ import java.util.ArrayList;
         final int sz = pos2.getBlockZ() + 1;
         final int ez = (sz + dpw.ROAD_WIDTH) - 1;
 
-        PlotHelper.setSimpleCuboid(w, new Location(w, sx, dpw.ROAD_HEIGHT + 1, sz + 1), new Location(w, ex + 1, 257, ez), new PlotBlock((short) 0, (byte) 0));
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 0, sz + 1), new Location(w, ex, 1, ez), new PlotBlock((short) 7, (byte) 0));
-        PlotHelper.setCuboid(w, new Location(w, sx + 1, 1, sz + 1), new Location(w, ex, dpw.ROAD_HEIGHT + 1, ez), dpw.ROAD_BLOCK);
+        WallQueue.get(w).flush(sx, sz, ex, ez);
+        sink.setAir(sx, dpw.ROAD_HEIGHT + 1, sz + 1, ex + 1, ez);
+        sink.setCuboid(sx + 1, 0, sz + 1, ex, 1, ez, new PlotBlock((short) 7, (byte) 0));
+        sink.setCuboid(sx + 1, 1, sz + 1, ex, dpw.ROAD_HEIGHT + 1, ez, dpw.ROAD_BLOCK);
+        sink.flush();
 
         return true;
     }
@@ -796,6 +451,7 @@ import java.util.ArrayList;
     public boolean removeRoadEast(final PlotWorld plotworld, final Plot plot) {
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final World w = Bukkit.getWorld(plot.world);
+        final BlockSink sink = getSink(w);
 
         final Location pos1 = getPlotBottomLocAbs(plotworld, plot.id);
         final Location pos2 = getPlotTopLocAbs(plotworld, plot.id);
@@ -805,10 +461,12 @@ import java.util.ArrayList;
         final int sz = pos1.getBlockZ();
         final int ez = pos2.getBlockZ() + 1;
 
-        PlotHelper.setSimpleCuboid(w, new Location(w, sx, Math.min(dpw.PLOT_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz), new Location(w, ex + 1, 257, ez + 1), new PlotBlock((short) 0, (byte) 0));
+        WallQueue.get(w).flush(sx, sz, ex, ez);
+        sink.setAir(sx, Math.min(dpw.PLOT_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz, ex + 1, ez + 1);
 
-        PlotHelper.setCuboid(w, new Location(w, sx, 1, sz), new Location(w, ex + 1, dpw.PLOT_HEIGHT, ez + 1), dpw.MAIN_BLOCK);
-        PlotHelper.setCuboid(w, new Location(w, sx, dpw.PLOT_HEIGHT, sz), new Location(w, ex + 1, dpw.PLOT_HEIGHT + 1, ez + 1), dpw.TOP_BLOCK);
+        sink.setCuboid(sx, 1, sz, ex + 1, dpw.PLOT_HEIGHT, ez + 1, dpw.MAIN_BLOCK);
+        sink.setCuboid(sx, dpw.PLOT_HEIGHT, sz, ex + 1, dpw.PLOT_HEIGHT + 1, ez + 1, dpw.TOP_BLOCK);
+        sink.flush();
 
         return true;
     }
@@ -817,6 +475,7 @@ import java.util.ArrayList;
     public boolean removeRoadSouth(final PlotWorld plotworld, final Plot plot) {
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final World w = Bukkit.getWorld(plot.world);
+        final BlockSink sink = getSink(w);
 
         final Location pos1 = getPlotBottomLocAbs(plotworld, plot.id);
         final Location pos2 = getPlotTopLocAbs(plotworld, plot.id);
@@ -826,10 +485,12 @@ import java.util.ArrayList;
         final int sx = pos1.getBlockX();
         final int ex = pos2.getBlockX() + 1;
 
-        PlotHelper.setSimpleCuboid(w, new Location(w, sx, Math.min(dpw.PLOT_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz), new Location(w, ex + 1, 257, ez + 1), new PlotBlock((short) 0, (byte) 0));
+        WallQueue.get(w).flush(sx, sz, ex, ez);
+        sink.setAir(sx, Math.min(dpw.PLOT_HEIGHT, dpw.ROAD_HEIGHT) + 1, sz, ex + 1, ez + 1);
 
-        PlotHelper.setCuboid(w, new Location(w, sx, 1, sz), new Location(w, ex + 1, dpw.PLOT_HEIGHT, ez + 1), dpw.MAIN_BLOCK);
-        PlotHelper.setCuboid(w, new Location(w, sx, dpw.PLOT_HEIGHT, sz), new Location(w, ex + 1, dpw.PLOT_HEIGHT + 1, ez + 1), dpw.TOP_BLOCK);
+        sink.setCuboid(sx, 1, sz, ex + 1, dpw.PLOT_HEIGHT, ez + 1, dpw.MAIN_BLOCK);
+        sink.setCuboid(sx, dpw.PLOT_HEIGHT, sz, ex + 1, dpw.PLOT_HEIGHT + 1, ez + 1, dpw.TOP_BLOCK);
+        sink.flush();
 
         return true;
     }
@@ -838,6 +499,7 @@ import java.util.ArrayList;
     public boolean removeRoadSouthEast(final PlotWorld plotworld, final Plot plot) {
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
         final World world = Bukkit.getWorld(plot.world);
+        final BlockSink sink = getSink(world);
 
         final Location loc = getPlotTopLocAbs(dpw, plot.id);
 
@@ -846,10 +508,12 @@ import java.util.ArrayList;
         final int sz = loc.getBlockZ() + 1;
         final int ez = (sz + dpw.ROAD_WIDTH) - 1;
 
-        PlotHelper.setSimpleCuboid(world, new Location(world, sx, dpw.ROAD_HEIGHT + 1, sz), new Location(world, ex + 1, 257, ez + 1), new PlotBlock((short) 0, (byte) 0));
+        WallQueue.get(world).flush(sx, sz, ex, ez);
+        sink.setAir(sx, dpw.ROAD_HEIGHT + 1, sz, ex + 1, ez + 1);
 
-        PlotHelper.setCuboid(world, new Location(world, sx + 1, 1, sz + 1), new Location(world, ex, dpw.ROAD_HEIGHT, ez), dpw.MAIN_BLOCK);
-        PlotHelper.setCuboid(world, new Location(world, sx + 1, dpw.ROAD_HEIGHT, sz + 1), new Location(world, ex, dpw.ROAD_HEIGHT + 1, ez), dpw.TOP_BLOCK);
+        sink.setCuboid(sx + 1, 1, sz + 1, ex, dpw.ROAD_HEIGHT, ez, dpw.MAIN_BLOCK);
+        sink.setCuboid(sx + 1, dpw.ROAD_HEIGHT, sz + 1, ex, dpw.ROAD_HEIGHT + 1, ez, dpw.TOP_BLOCK);
+        sink.flush();
         return true;
     }
 
@@ -861,6 +525,8 @@ import java.util.ArrayList;
 
         // TODO set plot wall
 
+        MergeIndex.finish(world, plotIds);
+
         final ClassicPlotWorld dpw = (ClassicPlotWorld) plotworld;
 
         final PlotId pos1 = plotIds.get(0);
@@ -870,28 +536,34 @@ import java.util.ArrayList;
 
         final Location megaPlotBot = PlotHelper.getPlotBottomLoc(world, pos1);
         final Location megaPlotTop = PlotHelper.getPlotTopLoc(world, pos2).add(1, 0, 1);
+        WallQueue.get(world).flush(megaPlotBot.getBlockX(), megaPlotBot.getBlockZ(), megaPlotTop.getBlockX(), megaPlotTop.getBlockZ());
+        final BlockSink sink = getSink(world);
         for (int x = megaPlotBot.getBlockX(); x <= megaPlotTop.getBlockX(); x++) {
             for (int z = megaPlotBot.getBlockZ(); z <= megaPlotTop.getBlockZ(); z++) {
                 if ((z == megaPlotBot.getBlockZ()) || (z == megaPlotTop.getBlockZ()) || (x == megaPlotBot.getBlockX()) || (x == megaPlotTop.getBlockX())) {
-                    world.getBlockAt(x, dpw.WALL_HEIGHT + 1, z).setTypeIdAndData(block.id, block.data, false);
+                    sink.setBlock(x, dpw.WALL_HEIGHT + 1, z, block.id, block.data);
                 }
             }
         }
+        sink.flush();
         return true;
     }
 
     @Override
     public boolean finishPlotUnlink(final World world, final PlotWorld plotworld, final ArrayList<PlotId> plotIds) {
+        MergeIndex.finish(world, plotIds);
         return true;
     }
 
     @Override
     public boolean startPlotMerge(final World world, final PlotWorld plotworld, final ArrayList<PlotId> plotIds) {
+        MergeIndex.start(world.getName());
         return true;
     }
 
     @Override
     public boolean startPlotUnlink(final World world, final PlotWorld plotworld, final ArrayList<PlotId> plotIds) {
+        MergeIndex.start(world.getName());
         return true;
     }
 }
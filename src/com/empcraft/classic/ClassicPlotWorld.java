@@ -83,6 +83,10 @@ public class ClassicPlotWorld extends PlotWorld {
      * Default road block: 155
      */
     public final static PlotBlock ROAD_BLOCK_DEFAULT = new PlotBlock((short) 155, (byte) 0);
+    /**
+     * Default layout: the old cuboid cascade, so existing worlds keep generating the same blocks
+     */
+    public final static boolean TABLE_LAYOUT_DEFAULT = false;
     /**
      * Road Height
      */
@@ -132,6 +136,13 @@ public class ClassicPlotWorld extends PlotWorld {
      * Road block
      */
     public PlotBlock ROAD_BLOCK;
+    /**
+     * Generate from the layout tables (see ClassicLayout) instead of the old cuboid cascade (see ClassicCascade)
+     */
+    public boolean TABLE_LAYOUT;
+
+    private volatile ClassicLayout layout;
+    private volatile ClassicChunkBuilder builder;
 
     /*
      * Here we are just calling the super method, nothing special
@@ -150,7 +161,7 @@ public class ClassicPlotWorld extends PlotWorld {
     @Override
     public ConfigurationNode[] getSettingNodes() {
         // TODO return a set of configuration nodes (used for setup command)
-        return new ConfigurationNode[]{new ConfigurationNode("plot.height", ClassicPlotWorld.PLOT_HEIGHT_DEFAULT, "Plot height", Configuration.INTEGER, true), new ConfigurationNode("plot.size", ClassicPlotWorld.PLOT_WIDTH_DEFAULT, "Plot width", Configuration.INTEGER, true), new ConfigurationNode("plot.filling", ClassicPlotWorld.MAIN_BLOCK_DEFAULT, "Plot block", Configuration.BLOCKLIST, true), new ConfigurationNode("plot.floor", ClassicPlotWorld.TOP_BLOCK_DEFAULT, "Plot floor block", Configuration.BLOCKLIST, true), new ConfigurationNode("wall.block", ClassicPlotWorld.WALL_BLOCK_DEFAULT, "Top wall block", Configuration.BLOCK, true), new ConfigurationNode("wall.block_claimed", ClassicPlotWorld.CLAIMED_WALL_BLOCK_DEFAULT, "Wall block (claimed)", Configuration.BLOCK, true), new ConfigurationNode("road.width", ClassicPlotWorld.ROAD_WIDTH_DEFAULT, "Road width", Configuration.INTEGER, true), new ConfigurationNode("road.height", ClassicPlotWorld.ROAD_HEIGHT_DEFAULT, "Road height", Configuration.INTEGER, true), new ConfigurationNode("road.enable_stripes", ClassicPlotWorld.ROAD_STRIPES_ENABLED_DEFAULT, "Enable road stripes", Configuration.BOOLEAN, true), new ConfigurationNode("road.block", ClassicPlotWorld.ROAD_BLOCK_DEFAULT, "Road block", Configuration.BLOCK, true), new ConfigurationNode("road.stripes", ClassicPlotWorld.ROAD_STRIPES_DEFAULT, "Road stripe block", Configuration.BLOCK, true), new ConfigurationNode("wall.filling", ClassicPlotWorld.WALL_FILLING_DEFAULT, "Wall filling block", Configuration.BLOCK, true), new ConfigurationNode("wall.height", ClassicPlotWorld.WALL_HEIGHT_DEFAULT, "Wall height", Configuration.INTEGER, true),};
+        return new ConfigurationNode[]{new ConfigurationNode("plot.height", ClassicPlotWorld.PLOT_HEIGHT_DEFAULT, "Plot height", Configuration.INTEGER, true), new ConfigurationNode("plot.size", ClassicPlotWorld.PLOT_WIDTH_DEFAULT, "Plot width", Configuration.INTEGER, true), new ConfigurationNode("plot.filling", ClassicPlotWorld.MAIN_BLOCK_DEFAULT, "Plot block", Configuration.BLOCKLIST, true), new ConfigurationNode("plot.floor", ClassicPlotWorld.TOP_BLOCK_DEFAULT, "Plot floor block", Configuration.BLOCKLIST, true), new ConfigurationNode("wall.block", ClassicPlotWorld.WALL_BLOCK_DEFAULT, "Top wall block", Configuration.BLOCK, true), new ConfigurationNode("wall.block_claimed", ClassicPlotWorld.CLAIMED_WALL_BLOCK_DEFAULT, "Wall block (claimed)", Configuration.BLOCK, true), new ConfigurationNode("road.width", ClassicPlotWorld.ROAD_WIDTH_DEFAULT, "Road width", Configuration.INTEGER, true), new ConfigurationNode("road.height", ClassicPlotWorld.ROAD_HEIGHT_DEFAULT, "Road height", Configuration.INTEGER, true), new ConfigurationNode("road.enable_stripes", ClassicPlotWorld.ROAD_STRIPES_ENABLED_DEFAULT, "Enable road stripes", Configuration.BOOLEAN, true), new ConfigurationNode("road.block", ClassicPlotWorld.ROAD_BLOCK_DEFAULT, "Road block", Configuration.BLOCK, true), new ConfigurationNode("road.stripes", ClassicPlotWorld.ROAD_STRIPES_DEFAULT, "Road stripe block", Configuration.BLOCK, true), new ConfigurationNode("wall.filling", ClassicPlotWorld.WALL_FILLING_DEFAULT, "Wall filling block", Configuration.BLOCK, true), new ConfigurationNode("wall.height", ClassicPlotWorld.WALL_HEIGHT_DEFAULT, "Wall height", Configuration.INTEGER, true), new ConfigurationNode("generator.table_layout", ClassicPlotWorld.TABLE_LAYOUT_DEFAULT, "Use the layout tables (changes the road and wall columns at some chunk seams)", Configuration.BOOLEAN, false),};
     }
 
     /**
@@ -176,5 +187,36 @@ public class ClassicPlotWorld extends PlotWorld {
         this.WALL_FILLING = (PlotBlock) Configuration.BLOCK.parseString(config.getString("wall.filling"));
         this.WALL_HEIGHT = config.getInt("wall.height");
         this.CLAIMED_WALL_BLOCK = (PlotBlock) Configuration.BLOCK.parseString(config.getString("wall.block_claimed"));
+        this.TABLE_LAYOUT = config.getBoolean("generator.table_layout", TABLE_LAYOUT_DEFAULT);
+        this.layout = null;
+        this.builder = null;
+        // Templates compiled for the old settings aren't needed any more (unless another world has them)
+        ChunkTemplateCache.update(this);
+    }
+
+    /**
+     * Get the layout tables for the current settings (built on first use, and again after the configuration is
+     * reloaded)
+     */
+    public ClassicLayout getLayout() {
+        ClassicLayout layout = this.layout;
+        if (layout == null) {
+            layout = new ClassicLayout(this);
+            this.layout = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Get a chunk builder for the current settings, to write the blocks the generator would place (e.g. when
+     * clearing a plot)
+     */
+    public ClassicChunkBuilder getBuilder() {
+        ClassicChunkBuilder builder = this.builder;
+        if (builder == null) {
+            builder = new ClassicChunkBuilder(this);
+            this.builder = builder;
+        }
+        return builder;
     }
 }
@@ -0,0 +1,132 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+/**
+ * A slow, but obviously correct description of what a classic plot world should look like. Every block is worked out
+ * on its own, straight from the plot geometry used by ClassicPlotManager (getPlotBottomLocAbs / getPlotTopLocAbs), so it
+ * can be used to check the (much faster) generator and populator.
+ */
+public class ClassicReference {
+    public static final PlotBlock AIR = new PlotBlock((short) 0, (byte) 0);
+    public static final PlotBlock BEDROCK = new PlotBlock((short) 7, (byte) 0);
+
+    private final ClassicPlotWorld plotworld;
+
+    public ClassicReference(final ClassicPlotWorld plotworld) {
+        this.plotworld = plotworld;
+    }
+
+    private static int floorDiv(final int a, final int b) {
+        int q = a / b;
+        if (((a % b) != 0) && ((a < 0) != (b < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    /**
+     * What a coordinate is along one axis: road, stripe, wall or plot
+     */
+    public byte getType(final int coord) {
+        final ClassicPlotWorld dpw = this.plotworld;
+        if (dpw.ROAD_WIDTH == 0) {
+            return ClassicLayout.PLOT;
+        }
+        final int size = dpw.PLOT_WIDTH + dpw.ROAD_WIDTH;
+
+        // The bottom wall of plot n is at (n * size) - PLOT_WIDTH - floor(ROAD_WIDTH / 2) - 1, and the top wall is
+        // PLOT_WIDTH + 1 blocks further along. Find the last bottom wall at or before this coordinate.
+        final int offset = dpw.PLOT_WIDTH + (dpw.ROAD_WIDTH / 2) + 1;
+        final int n = floorDiv(coord + offset, size);
+        final int bottom = (n * size) - offset;
+        final int top = bottom + dpw.PLOT_WIDTH + 1;
+        final int nextBottom = bottom + size;
+
+        if ((coord == bottom) || (coord == top)) {
+            return ClassicLayout.WALL;
+        }
+        if ((coord > bottom) && (coord < top)) {
+            return ClassicLayout.PLOT;
+        }
+        // Stripes run along the road, next to the walls on either side
+        if ((dpw.ROAD_WIDTH > 4) && dpw.ROAD_STRIPES_ENABLED && ((coord == (top + 1)) || (coord == (nextBottom - 1)))) {
+            return ClassicLayout.STRIPE;
+        }
+        return ClassicLayout.ROAD;
+    }
+
+    /**
+     * What a column is: road, stripe, wall or plot
+     */
+    public byte getColumn(final int x, final int z) {
+        final byte typeX = getType(x);
+        final byte typeZ = getType(z);
+        final boolean roadX = (typeX == ClassicLayout.ROAD) || (typeX == ClassicLayout.STRIPE);
+        final boolean roadZ = (typeZ == ClassicLayout.ROAD) || (typeZ == ClassicLayout.STRIPE);
+        if (roadX && roadZ) {
+            // Intersections don't have stripes
+            return ClassicLayout.ROAD;
+        }
+        if (roadX) {
+            return typeX;
+        }
+        if (roadZ) {
+            return typeZ;
+        }
+        if ((typeX == ClassicLayout.WALL) || (typeZ == ClassicLayout.WALL)) {
+            return ClassicLayout.WALL;
+        }
+        return ClassicLayout.PLOT;
+    }
+
+    /**
+     * Get the block which should be at a location. Multi-block plot fillings and floors use the palette's pattern tile.
+     */
+    public PlotBlock getBlock(final int x, final int y, final int z) {
+        final ClassicPlotWorld dpw = this.plotworld;
+        if (y == 0) {
+            return BEDROCK;
+        }
+        switch (getColumn(x, z)) {
+            case ClassicLayout.PLOT:
+                if (y < dpw.PLOT_HEIGHT) {
+                    return PatternTile.get(dpw.MAIN_BLOCK).getBlock(x, y, z);
+                }
+                if (y == dpw.PLOT_HEIGHT) {
+                    return PatternTile.get(dpw.TOP_BLOCK).getBlock(x, y, z);
+                }
+                break;
+            case ClassicLayout.WALL:
+                if (y <= dpw.WALL_HEIGHT) {
+                    return dpw.WALL_FILLING;
+                }
+                if (y == (dpw.WALL_HEIGHT + 1)) {
+                    return dpw.WALL_BLOCK;
+                }
+                break;
+            case ClassicLayout.STRIPE:
+                if (y < dpw.ROAD_HEIGHT) {
+                    return dpw.ROAD_BLOCK;
+                }
+                if (y == dpw.ROAD_HEIGHT) {
+                    return dpw.ROAD_STRIPES;
+                }
+                break;
+            default:
+                if (y <= dpw.ROAD_HEIGHT) {
+                    return dpw.ROAD_BLOCK;
+                }
+                break;
+        }
+        return AIR;
+    }
+
+    /**
+     * Check if a block (id and data) is the one which should be at a location
+     */
+    public boolean matches(final int x, final int y, final int z, final short id, final byte data) {
+        final PlotBlock block = getBlock(x, y, z);
+        return (block.id == id) && (block.data == data);
+    }
+}
@@ -0,0 +1,142 @@
+package com.empcraft.classic;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * A 16x16x16 section stored as a palette of block ids and packed palette indexes, instead of a short per block (8
+ * KiB). Classic plot chunks only use a handful of ids, so most sections need 4 bits per block (2 KiB), and uniform
+ * sections (e.g. all plot filling) need no indexes at all. Sections with more than 256 ids are kept as they are.
+ * <p/>
+ * Sections are immutable and compared by their contents, so they can be interned and shared between templates.
+ */
+public final class CompactSection {
+    private final short[] palette;
+    /**
+     * 4 bit (palette up to 16 ids) or 8 bit indexes, null for uniform sections
+     */
+    private final byte[] indexes;
+    /**
+     * The raw ids, only for sections with too many ids for a palette
+     */
+    private final short[] blocks;
+    /**
+     * The ids as a short[4096], made when they're needed and handed to every chunk using this section until the
+     * garbage collector wants the memory back - only the compact form is kept for good
+     */
+    private volatile SoftReference<short[]> expanded;
+    private final int hash;
+
+    private CompactSection(final short[] palette, final byte[] indexes, final short[] blocks) {
+        this.palette = palette;
+        this.indexes = indexes;
+        this.blocks = blocks;
+        this.hash = (31 * ((31 * Arrays.hashCode(palette)) + Arrays.hashCode(indexes))) + Arrays.hashCode(blocks);
+    }
+
+    /**
+     * Compact a section (index ((y & 0xF) << 8) | (z << 4) | x). Palette entries are in the order they first appear,
+     * so the same blocks always give the same palette and indexes.
+     */
+    public static CompactSection compact(final short[] section) {
+        final short[] found = new short[256];
+        final byte[] lookup = new byte[4096];
+        int size = 0;
+        for (int i = 0; i < 4096; i++) {
+            final short id = section[i];
+            int index = -1;
+            for (int j = 0; j < size; j++) {
+                if (found[j] == id) {
+                    index = j;
+                    break;
+                }
+            }
+            if (index == -1) {
+                if (size == 256) {
+                    return new CompactSection(null, null, section.clone());
+                }
+                index = size;
+                found[size++] = id;
+            }
+            lookup[i] = (byte) index;
+        }
+        final short[] palette = Arrays.copyOf(found, size);
+        if (size == 1) {
+            return new CompactSection(palette, null, null);
+        }
+        if (size > 16) {
+            return new CompactSection(palette, lookup, null);
+        }
+        final byte[] packed = new byte[2048];
+        for (int i = 0; i < 4096; i++) {
+            packed[i >> 1] |= lookup[i] << ((i & 1) << 2);
+        }
+        return new CompactSection(palette, packed, null);
+    }
+
+    /**
+     * Get the id at an index within the section
+     */
+    public short get(final int index) {
+        if (this.blocks != null) {
+            return this.blocks[index];
+        }
+        if (this.indexes == null) {
+            return this.palette[0];
+        }
+        if (this.indexes.length == 2048) {
+            return this.palette[(this.indexes[index >> 1] >> ((index & 1) << 2)) & 0xF];
+        }
+        return this.palette[this.indexes[index] & 0xFF];
+    }
+
+    /**
+     * Expand to a short[4096], as the Bukkit API expects. The array is shared by every chunk which asks while it's
+     * softly held (sections are interned, so that's at most one array per distinct section), and must not be modified
+     * - CraftBukkit only reads the sections a generator returns.
+     */
+    public short[] expand() {
+        if (this.blocks != null) {
+            return this.blocks;
+        }
+        final SoftReference<short[]> reference = this.expanded;
+        short[] expanded = reference == null ? null : reference.get();
+        if (expanded != null) {
+            return expanded;
+        }
+        expanded = new short[4096];
+        if (this.indexes == null) {
+            Arrays.fill(expanded, this.palette[0]);
+        } else if (this.indexes.length == 2048) {
+            for (int i = 0; i < 2048; i++) {
+                final int both = this.indexes[i];
+                expanded[i << 1] = this.palette[both & 0xF];
+                expanded[(i << 1) | 1] = this.palette[(both >> 4) & 0xF];
+            }
+        } else {
+            for (int i = 0; i < 4096; i++) {
+                expanded[i] = this.palette[this.indexes[i] & 0xFF];
+            }
+        }
+        // Two threads may both expand it at once, which is harmless - the arrays are the same
+        this.expanded = new SoftReference<short[]>(expanded);
+        return expanded;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactSection)) {
+            return false;
+        }
+        final CompactSection other = (CompactSection) obj;
+        return (this.hash == other.hash) && Arrays.equals(this.palette, other.palette) && Arrays.equals(this.indexes, other.indexes) && Arrays.equals(this.blocks, other.blocks);
+    }
+}
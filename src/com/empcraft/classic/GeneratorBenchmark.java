@@ -0,0 +1,213 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.generator.ChunkGenerator.BiomeGrid;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times the generator and the populator (ClassicPop) over a grid of chunks, for a matrix of settings - plot widths,
+ * road widths, road stripes on and off, single blocks against multi-block palettes with data values, and the old cuboid
+ * cascade against the layout tables - and reports
+ * chunks per second and bytes allocated per chunk. The generator is timed both through
+ * ClassicChunkBuilder.getSections and through ClassicGen.generateExtBlockSections (with a stand-in world and biome
+ * grid), which is what the server calls. The first pass over the grid compiles the templates and is reported
+ * separately, then there are warmup rounds before the measured ones. This doesn't need a server - run it with Bukkit
+ * and PlotSquared on the classpath:
+ * <p/>
+ * java -cp bukkit.jar:PlotSquared.jar:ClassicPlotGenerator.jar com.empcraft.classic.GeneratorBenchmark [radius] [rounds]
+ */
+public class GeneratorBenchmark {
+    private static final int MAX_HEIGHT = 256;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int[] PLOT_WIDTHS = new int[]{10, 32, 64};
+    private static final int[] ROAD_WIDTHS = new int[]{3, 7, 16};
+
+    /**
+     * Stops the JIT from dropping work whose result isn't used
+     */
+    private static long blackhole;
+
+    public static void main(final String[] args) {
+        final int radius = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        if (ChunkMetrics.getAllocatedBytes() < 0) {
+            System.out.println("This JVM can't measure allocation, bytes per chunk won't be reported");
+        }
+        System.out.println(((2 * radius) * (2 * radius)) + " chunks per round, " + rounds + " rounds (chunks/s, bytes/chunk)");
+        System.out.println(String.format(Locale.ROOT, "%-32s %-18s %-18s %-18s %-18s", "settings", "first pass", "getSections", "ClassicGen", "populate"));
+        for (final int plotWidth : PLOT_WIDTHS) {
+            for (final int roadWidth : ROAD_WIDTHS) {
+                for (final boolean stripes : new boolean[]{false, true}) {
+                    for (final boolean palettes : new boolean[]{false, true}) {
+                        for (final boolean tables : new boolean[]{false, true}) {
+                            final String name = plotWidth + "/" + roadWidth + (stripes ? " stripes" : "") + (palettes ? " palettes" : "") + (tables ? " tables" : "");
+                            final ClassicPlotWorld plotworld = defaultWorld("benchmark " + name);
+                            plotworld.PLOT_WIDTH = plotWidth;
+                            plotworld.ROAD_WIDTH = roadWidth;
+                            plotworld.ROAD_STRIPES_ENABLED = stripes;
+                            plotworld.TABLE_LAYOUT = tables;
+                            if (palettes) {
+                                plotworld.MAIN_BLOCK = new PlotBlock[]{new PlotBlock((short) 1, (byte) 1), new PlotBlock((short) 1, (byte) 3), new PlotBlock((short) 1, (byte) 5)};
+                                plotworld.TOP_BLOCK = new PlotBlock[]{new PlotBlock((short) 35, (byte) 4), new PlotBlock((short) 35, (byte) 5)};
+                                plotworld.WALL_FILLING = new PlotBlock((short) 98, (byte) 1);
+                            }
+                            run(name, plotworld, radius, rounds);
+                        }
+                    }
+                }
+            }
+        }
+        ChunkMetrics.unregisterAll();
+        System.out.println("(checksum " + blackhole + ")");
+    }
+
+    static ClassicPlotWorld defaultWorld(final String name) {
+        final ClassicPlotWorld plotworld = new ClassicPlotWorld(name);
+        plotworld.PLOT_WIDTH = ClassicPlotWorld.PLOT_WIDTH_DEFAULT;
+        plotworld.ROAD_WIDTH = ClassicPlotWorld.ROAD_WIDTH_DEFAULT;
+        plotworld.PLOT_HEIGHT = ClassicPlotWorld.PLOT_HEIGHT_DEFAULT;
+        plotworld.ROAD_HEIGHT = ClassicPlotWorld.ROAD_HEIGHT_DEFAULT;
+        plotworld.WALL_HEIGHT = ClassicPlotWorld.WALL_HEIGHT_DEFAULT;
+        plotworld.ROAD_STRIPES_ENABLED = ClassicPlotWorld.ROAD_STRIPES_ENABLED_DEFAULT;
+        plotworld.TABLE_LAYOUT = ClassicPlotWorld.TABLE_LAYOUT_DEFAULT;
+        plotworld.MAIN_BLOCK = ClassicPlotWorld.MAIN_BLOCK_DEFAULT;
+        plotworld.TOP_BLOCK = ClassicPlotWorld.TOP_BLOCK_DEFAULT;
+        plotworld.WALL_BLOCK = ClassicPlotWorld.WALL_BLOCK_DEFAULT;
+        plotworld.CLAIMED_WALL_BLOCK = ClassicPlotWorld.CLAIMED_WALL_BLOCK_DEFAULT;
+        plotworld.WALL_FILLING = ClassicPlotWorld.WALL_FILLING_DEFAULT;
+        plotworld.ROAD_BLOCK = ClassicPlotWorld.ROAD_BLOCK_DEFAULT;
+        plotworld.ROAD_STRIPES = ClassicPlotWorld.ROAD_STRIPES_DEFAULT;
+        return plotworld;
+    }
+
+    private static void run(final String name, final ClassicPlotWorld plotworld, final int radius, final int rounds) {
+        final ClassicChunkBuilder builder = new ClassicChunkBuilder(plotworld);
+        final ClassicPop populator = new ClassicPop(plotworld, builder);
+        final ClassicGen generator = new ClassicGen(plotworld.worldname, plotworld);
+        final World world = createWorld(plotworld.worldname);
+        final Grid biomes = new Grid();
+        // The same sink every round, so only the first round allocates its sections
+        final MemoryBlockSink sink = new MemoryBlockSink(MAX_HEIGHT);
+        final int chunks = (2 * radius) * (2 * radius);
+
+        final long[] first = generate(builder, radius);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            generate(builder, radius);
+            generate(generator, world, biomes, radius);
+            populate(populator, sink, radius);
+        }
+        final long[] built = new long[2];
+        final long[] generated = new long[2];
+        final long[] populated = new long[2];
+        for (int i = 0; i < rounds; i++) {
+            add(built, generate(builder, radius));
+            add(generated, generate(generator, world, biomes, radius));
+            add(populated, populate(populator, sink, radius));
+        }
+        System.out.println(String.format(Locale.ROOT, "%-32s %-18s %-18s %-18s %-18s", name, format(chunks, first), format(chunks * rounds, built), format(chunks * rounds, generated), format(chunks * rounds, populated)));
+        blackhole += sink.getWrites();
+    }
+
+    /**
+     * @return the time taken (ns) and the bytes allocated
+     */
+    private static long[] generate(final ClassicChunkBuilder builder, final int radius) {
+        final long allocated = ChunkMetrics.getAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int cx = -radius; cx < radius; cx++) {
+            for (int cz = -radius; cz < radius; cz++) {
+                consume(builder.getSections(cx, cz, MAX_HEIGHT >> 4), cx);
+            }
+        }
+        return measured(start, allocated);
+    }
+
+    private static long[] generate(final ClassicGen generator, final World world, final BiomeGrid biomes, final int radius) {
+        final Random random = new Random(0);
+        final long allocated = ChunkMetrics.getAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int cx = -radius; cx < radius; cx++) {
+            for (int cz = -radius; cz < radius; cz++) {
+                consume(generator.generateExtBlockSections(world, random, cx, cz, biomes), cx);
+            }
+        }
+        return measured(start, allocated);
+    }
+
+    private static void consume(final short[][] sections, final int cx) {
+        for (final short[] section : sections) {
+            if (section != null) {
+                blackhole += section[cx & 0xFFF];
+            }
+        }
+    }
+
+    private static long[] populate(final ClassicPop populator, final BlockSink sink, final int radius) {
+        final long allocated = ChunkMetrics.getAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int cx = -radius; cx < radius; cx++) {
+            for (int cz = -radius; cz < radius; cz++) {
+                populator.populate(sink, cx, cz);
+            }
+        }
+        return measured(start, allocated);
+    }
+
+    private static long[] measured(final long start, final long allocated) {
+        final long time = System.nanoTime() - start;
+        return new long[]{time, allocated < 0 ? -1 : ChunkMetrics.getAllocatedBytes() - allocated};
+    }
+
+    private static void add(final long[] total, final long[] round) {
+        total[0] += round[0];
+        total[1] = (total[1] < 0) || (round[1] < 0) ? -1 : total[1] + round[1];
+    }
+
+    private static String format(final int chunks, final long[] measured) {
+        final double perSecond = (chunks * 1000000000.0) / Math.max(1, measured[0]);
+        final String bytes = measured[1] < 0 ? "?" : String.valueOf(measured[1] / chunks);
+        return String.format(Locale.ROOT, "%.0f, %s", perSecond, bytes);
+    }
+
+    /**
+     * A world which only knows its name and height - all the generator asks of it
+     */
+    private static World createWorld(final String name) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class[]{World.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("getMaxHeight")) {
+                    return MAX_HEIGHT;
+                }
+                if (method.getName().equals("getName")) {
+                    return name;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * Stands in for the server's biome grid
+     */
+    private static class Grid implements BiomeGrid {
+        private final Biome[] biomes = new Biome[256];
+
+        @Override
+        public Biome getBiome(final int x, final int z) {
+            return this.biomes[(z << 4) | x];
+        }
+
+        @Override
+        public void setBiome(final int x, final int z, final Biome biome) {
+            this.biomes[(z << 4) | x] = biome;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.empcraft.classic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of nanosecond timings, in the style of HdrHistogram: every power of two is split into 8 linear
+ * sub-buckets, so any value is stored to within 12.5%, with a fixed 4 KiB of counters. Recording is a couple of
+ * atomic increments, so it can be called from any generator thread.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Bucket for a value - values below 8 get a bucket each, after that each power of two has 8 buckets
+     */
+    private static int getBucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    /**
+     * The highest value which goes into a bucket
+     */
+    private static long getUpperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        final long sub = bucket & (SUB_BUCKETS - 1);
+        return (((SUB_BUCKETS | sub) + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    public void record(final long nanos) {
+        this.counts.incrementAndGet(getBucket(nanos));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(nanos);
+        long current = this.max.get();
+        while ((nanos > current) && !this.max.compareAndSet(current, nanos)) {
+            current = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the value (upper bound of its bucket) below which the given fraction (0 - 1) of the recorded values are
+     */
+    public long getPercentile(final double fraction) {
+        final long total = this.count.get();
+        if (total == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= target) {
+                return Math.min(getUpperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Get the number of recorded values up to and including a value. Buckets end one below a power of two, so counts
+     * for 2^n - 1 are exact (a value of exactly 2^n is in the next bucket up).
+     */
+    public long getCountAtOrBelow(final long value) {
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (getUpperBound(i) > value) {
+                break;
+            }
+            seen += this.counts.get(i);
+        }
+        return seen;
+    }
+}
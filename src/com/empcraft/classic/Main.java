@@ -1,13 +1,82 @@
 package com.empcraft.classic;
 
+import org.bukkit.Bukkit;
 import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+
 public class Main extends JavaPlugin {
-    
+
+    @Override
+    public void onEnable() {
+        Bukkit.getPluginManager().registerEvents(new WorldListener(), this);
+        WorkQueue.configure(this, getConfig().getInt("clear.tick-budget", 10), getConfig().getInt("clear.unit-blocks", 4096));
+        ClassicPlotManager.setDiffClears(getConfig().getBoolean("clear.diff", true));
+        WallQueue.configure(this, getConfig().getInt("walls.tick-budget", 2));
+        ClassicPlotManager.setBuffered(getConfig().getBoolean("blocks.buffered", true));
+
+        // Chunk generation metrics - exported in the Prometheus text format for a scraper, and summarised in the console
+        final long exportInterval = getConfig().getInt("metrics.export-interval", 60) * 20L;
+        final long logInterval = getConfig().getInt("metrics.log-interval", 600) * 20L;
+        final File file = new File(getDataFolder(), getConfig().getString("metrics.file", "metrics.prom"));
+        if (exportInterval > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, new Runnable() {
+                @Override
+                public void run() {
+                    for (final ChunkMetrics metrics : ChunkMetrics.getAll()) {
+                        metrics.sample();
+                    }
+                    try {
+                        if (!getDataFolder().isDirectory()) {
+                            getDataFolder().mkdirs();
+                        }
+                        ChunkMetrics.export(file);
+                    } catch (final IOException e) {
+                        getLogger().warning("Could not write " + file + ": " + e.getMessage());
+                    }
+                }
+            }, exportInterval, exportInterval);
+        }
+        if (logInterval > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, new Runnable() {
+                @Override
+                public void run() {
+                    if (exportInterval <= 0) {
+                        for (final ChunkMetrics metrics : ChunkMetrics.getAll()) {
+                            metrics.sample();
+                        }
+                    }
+                    dumpMetrics();
+                }
+            }, logInterval, logInterval);
+        }
+    }
+
+    @Override
+    public void onDisable() {
+        // Don't leave plots half cleared
+        WorkQueue.flush();
+        WallQueue.flushAll();
+        dumpMetrics();
+        ChunkMetrics.unregisterAll();
+    }
+
+    /**
+     * Print a summary of the chunk metrics of every world which has generated anything
+     */
+    public void dumpMetrics() {
+        for (final ChunkMetrics metrics : ChunkMetrics.getAll()) {
+            if ((metrics.getChunksGenerated() > 0) || (metrics.getChunksPopulated() > 0)) {
+                getLogger().info(metrics.dump());
+            }
+        }
+    }
+
     @Override
     public ChunkGenerator getDefaultWorldGenerator(String worldname, String id) {
         return new ClassicGen(worldname);
     }
-	
+
 }
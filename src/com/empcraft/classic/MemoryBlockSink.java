@@ -0,0 +1,116 @@
+package com.empcraft.classic;
+
+import java.util.HashMap;
+
+/**
+ * An in-memory world, for running plot operations without a server (tests and benchmarks). Blocks which were never
+ * written are air.
+ */
+public class MemoryBlockSink extends AbstractBlockSink {
+    private final int height;
+    /**
+     * Sections of (id << 4) | data, by chunk
+     */
+    private final HashMap<Long, int[][]> chunks = new HashMap<Long, int[][]>();
+    /**
+     * The chunk looked up last - writes mostly come a chunk at a time, so this saves a map lookup for most of them
+     */
+    private long lastKey;
+    private int[][] lastChunk;
+    private long writes;
+
+    public MemoryBlockSink(final int height) {
+        this.height = height;
+    }
+
+    private static long key(final int cx, final int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private int[] getSection(final int x, final int y, final int z, final boolean create) {
+        final long key = key(x >> 4, z >> 4);
+        int[][] chunk = (key == this.lastKey) ? this.lastChunk : null;
+        if (chunk == null) {
+            chunk = this.chunks.get(key);
+            if (chunk == null) {
+                if (!create) {
+                    return null;
+                }
+                chunk = new int[this.height >> 4][];
+                this.chunks.put(key, chunk);
+            }
+            this.lastKey = key;
+            this.lastChunk = chunk;
+        }
+        int[] section = chunk[y >> 4];
+        if ((section == null) && create) {
+            section = new int[4096];
+            chunk[y >> 4] = section;
+        }
+        return section;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setBlock(final int x, final int y, final int z, final int id, final byte data) {
+        if ((y < 0) || (y >= this.height)) {
+            return;
+        }
+        this.writes++;
+        getSection(x, y, z, true)[((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF)] = (id << 4) | (data & 0xF);
+    }
+
+    @Override
+    public void setData(final int x, final int y, final int z, final byte data) {
+        if ((y < 0) || (y >= this.height)) {
+            return;
+        }
+        this.writes++;
+        final int[] section = getSection(x, y, z, true);
+        final int i = ((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF);
+        section[i] = (section[i] & ~0xF) | (data & 0xF);
+    }
+
+    public int getId(final int x, final int y, final int z) {
+        final int[] section = (y < 0) || (y >= this.height) ? null : getSection(x, y, z, false);
+        return section == null ? 0 : section[((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF)] >> 4;
+    }
+
+    public byte getData(final int x, final int y, final int z) {
+        final int[] section = (y < 0) || (y >= this.height) ? null : getSection(x, y, z, false);
+        return section == null ? 0 : (byte) (section[((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF)] & 0xF);
+    }
+
+    /**
+     * The number of block writes so far
+     */
+    public long getWrites() {
+        return this.writes;
+    }
+
+    @Override
+    protected boolean[] getEmptySections(final int cx, final int cz) {
+        final int[][] chunk = this.chunks.get(key(cx, cz));
+        final boolean[] empty = new boolean[this.height >> 4];
+        for (int sy = 0; sy < empty.length; sy++) {
+            empty[sy] = true;
+            if ((chunk != null) && (chunk[sy] != null)) {
+                for (final int block : chunk[sy]) {
+                    if ((block >> 4) != 0) {
+                        empty[sy] = false;
+                        break;
+                    }
+                }
+            }
+        }
+        return empty;
+    }
+
+    @Override
+    public void flush() {
+    }
+}
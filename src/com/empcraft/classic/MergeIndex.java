@@ -0,0 +1,312 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.PlotMain;
+import com.intellectualcrafters.plot.object.Plot;
+import com.intellectualcrafters.plot.object.PlotId;
+import com.intellectualcrafters.plot.util.PlayerFunctions;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A snapshot of the merged plots in a world: for every plot which is merged with a neighbour, the bottom plot of its
+ * mega plot and whether the roads to its north and west are merged. With it, finding the plot at a road or
+ * intersection is a hash lookup on the packed plot id, instead of a plot map lookup and a walk to the bottom plot.
+ * <p/>
+ * Snapshots are immutable, so they can be read from any thread. The snapshot of a world is built from the plot map on
+ * first use, and after that it's only changed through explicit calls: a merge or unlink hides it until it finishes
+ * (get returns null in between, so callers fall back to the plot map), then the plots it touched are updated in a new
+ * snapshot, and a deleted plot is updated the same way. Claiming a plot doesn't merge it, so it usually doesn't change
+ * anything here - except where a neighbour is still merged towards that id (e.g. the plot was deleted without an
+ * unlink), which joins them up again. The snapshot keeps a list of those ids and checks it on each get. If a merge
+ * never finishes (e.g. it failed part way through), the snapshot is rebuilt once it has been hidden for MERGE_TIMEOUT. The plot map may also be replaced (e.g. when plots are loaded again from the database) -
+ * the snapshot remembers the map it was built from, and is rebuilt if that has changed.
+ */
+public class MergeIndex {
+    /**
+     * How long (ms) a merge or unlink may take before it's assumed to have been abandoned
+     */
+    private static final long MERGE_TIMEOUT = 60000;
+
+    private static final ConcurrentHashMap<String, MergeIndex> worlds = new ConcurrentHashMap<String, MergeIndex>();
+    /**
+     * When the merge or unlink in progress in each world started
+     */
+    private static final ConcurrentHashMap<String, Long> merging = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * The road to the north (-z) of the plot is merged
+     */
+    private static final byte NORTH = 1;
+    /**
+     * The road to the west (-x) of the plot is merged
+     */
+    private static final byte WEST = 2;
+    /**
+     * Offsets to the neighbour in each direction of PlotSettings.getMerged (north, east, south, west)
+     */
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DZ = {-1, 0, 1, 0};
+
+    private final long[] keys;
+    private final byte[] roads;
+    private final long[] bottoms;
+    private final int mask;
+    /**
+     * The plot map this was built from
+     */
+    private final Map<PlotId, Plot> plots;
+    /**
+     * Pairs of {missing plot, plot merged towards it} - if the missing plot is claimed, both are looked up again
+     */
+    private final ArrayList<long[]> dangling = new ArrayList<long[]>();
+
+    private MergeIndex(final Map<PlotId, Plot> plots, final int count) {
+        this.plots = plots;
+        int capacity = 16;
+        while (capacity < (count * 2)) {
+            capacity <<= 1;
+        }
+        this.mask = capacity - 1;
+        this.keys = new long[capacity];
+        this.roads = new byte[capacity];
+        this.bottoms = new long[capacity];
+        Arrays.fill(this.keys, ClassicLayout.ROAD_ID);
+    }
+
+    /**
+     * Build the snapshot of every merged plot in a plot map
+     */
+    private static MergeIndex build(final World world, final Map<PlotId, Plot> plots) {
+        final ArrayList<Plot> merged = new ArrayList<Plot>();
+        for (final Plot plot : plots.values()) {
+            if (isMerged(plot)) {
+                merged.add(plot);
+            }
+        }
+        final MergeIndex index = new MergeIndex(plots, merged.size());
+        for (final Plot plot : merged) {
+            index.put(world, plot);
+        }
+        return index;
+    }
+
+    private static boolean isMerged(final Plot plot) {
+        final boolean[] flags = plot.settings.getMerged();
+        return (flags != null) && (flags[0] || flags[1] || flags[2] || flags[3]);
+    }
+
+    /**
+     * Add a plot while the snapshot is being built (before it's published)
+     */
+    private void put(final World world, final Plot plot) {
+        final PlotId bottom = PlayerFunctions.getBottomPlot(world, plot).id;
+        final long key = PlotIds.pack(plot.id.x, plot.id.y);
+        put(key, (byte) ((plot.settings.getMerged(0) ? NORTH : 0) | (plot.settings.getMerged(3) ? WEST : 0)), PlotIds.pack(bottom.x, bottom.y));
+        for (int direction = 0; direction < 4; direction++) {
+            if (plot.settings.getMerged(direction)) {
+                final PlotId neighbour = new PlotId(plot.id.x + DX[direction], plot.id.y + DZ[direction]);
+                if (!this.plots.containsKey(neighbour)) {
+                    this.dangling.add(new long[]{PlotIds.pack(neighbour.x, neighbour.y), key});
+                }
+            }
+        }
+    }
+
+    private void put(final long key, final byte roads, final long bottom) {
+        int i = slot(key);
+        while (this.keys[i] != ClassicLayout.ROAD_ID) {
+            i = (i + 1) & this.mask;
+        }
+        this.keys[i] = key;
+        this.roads[i] = roads;
+        this.bottoms[i] = bottom;
+    }
+
+    /**
+     * Make a new snapshot with some plots looked up again from the plot map. Every plot which was in the same mega
+     * plot as one of them is looked up again too, as its bottom plot may have changed. The rest are copied over.
+     */
+    private MergeIndex reload(final World world, final Collection<PlotId> ids) {
+        final HashSet<Long> affected = new HashSet<Long>();
+        final HashSet<Long> groups = new HashSet<Long>();
+        for (final PlotId id : ids) {
+            final long key = PlotIds.pack(id.x, id.y);
+            affected.add(key);
+            final int i = find(id.x, id.y);
+            if (i != -1) {
+                groups.add(this.bottoms[i]);
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != ClassicLayout.ROAD_ID) {
+                if (groups.contains(this.bottoms[i])) {
+                    affected.add(this.keys[i]);
+                } else {
+                    kept++;
+                }
+            }
+        }
+        final ArrayList<Plot> merged = new ArrayList<Plot>();
+        for (final long key : affected) {
+            final Plot plot = this.plots.get(PlotIds.get(key));
+            if ((plot != null) && isMerged(plot)) {
+                merged.add(plot);
+            }
+        }
+        final MergeIndex index = new MergeIndex(this.plots, kept + merged.size());
+        for (int i = 0; i < this.keys.length; i++) {
+            if ((this.keys[i] != ClassicLayout.ROAD_ID) && !affected.contains(this.keys[i])) {
+                index.put(this.keys[i], this.roads[i], this.bottoms[i]);
+            }
+        }
+        for (final long[] pair : this.dangling) {
+            if (!affected.contains(pair[1])) {
+                index.dangling.add(pair);
+            }
+        }
+        for (final Plot plot : merged) {
+            index.put(world, plot);
+        }
+        return index;
+    }
+
+    /**
+     * Get the index of a world, building it from the plot map if needed. Returns null while a merge or unlink is in
+     * progress in that world.
+     */
+    public static MergeIndex get(final World world) {
+        final String name = world.getName();
+        final Long started = merging.get(name);
+        if (started != null) {
+            if ((System.currentTimeMillis() - started) < MERGE_TIMEOUT) {
+                return null;
+            }
+            // The merge was abandoned, so the plot map may be half way through it
+            if (merging.remove(name, started)) {
+                worlds.remove(name);
+            }
+        }
+        final Map<PlotId, Plot> plots = PlotMain.getPlots(world);
+        MergeIndex index = worlds.get(name);
+        if ((index != null) && (index.plots != plots)) {
+            // The plot map was replaced
+            worlds.remove(name, index);
+            index = null;
+        }
+        if (index == null) {
+            index = build(world, plots);
+            worlds.put(name, index);
+            if (merging.containsKey(name)) {
+                // A merge started while this was being built
+                worlds.remove(name, index);
+                return null;
+            }
+        }
+        ArrayList<PlotId> claimed = null;
+        for (final long[] pair : index.dangling) {
+            if (plots.containsKey(PlotIds.get(pair[0]))) {
+                if (claimed == null) {
+                    claimed = new ArrayList<PlotId>();
+                }
+                claimed.add(PlotIds.get(pair[0]));
+                claimed.add(PlotIds.get(pair[1]));
+            }
+        }
+        if (claimed != null) {
+            // A plot was claimed where a neighbour is still merged towards it
+            update(world, claimed);
+            return worlds.get(name);
+        }
+        return index;
+    }
+
+    /**
+     * Hide the index of a world until finish is called (the plot map is about to change)
+     */
+    public static void start(final String world) {
+        merging.put(world, System.currentTimeMillis());
+    }
+
+    /**
+     * The plot map is consistent again - update the plots which were merged or unlinked
+     */
+    public static void finish(final World world, final Collection<PlotId> ids) {
+        update(world, ids);
+        merging.remove(world.getName());
+    }
+
+    /**
+     * Look some plots up again from the plot map, e.g. after one is deleted (call it once the plot has left the map)
+     */
+    public static synchronized void update(final World world, final Collection<PlotId> ids) {
+        final String name = world.getName();
+        final MergeIndex index = worlds.get(name);
+        if (index == null) {
+            // Nothing to update, it's built from scratch on next use
+            return;
+        }
+        if (index.plots != PlotMain.getPlots(world)) {
+            worlds.remove(name, index);
+            return;
+        }
+        worlds.put(name, index.reload(world, ids));
+    }
+
+    private int slot(final long key) {
+        return (int) ((key ^ (key >>> 29)) * 0x9E3779B97F4A7C15L >>> 40) & this.mask;
+    }
+
+    private int find(final int x, final int z) {
+        final long key = PlotIds.pack(x, z);
+        int i = slot(key);
+        while (true) {
+            final long current = this.keys[i];
+            if (current == key) {
+                return i;
+            }
+            if (current == ClassicLayout.ROAD_ID) {
+                return -1;
+            }
+            i = (i + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Get the bottom plot of the mega plot a plot belongs to (the plot itself if it isn't merged)
+     */
+    public PlotId getBottom(final int x, final int z) {
+        final int i = find(x, z);
+        return i == -1 ? PlotIds.get(x, z) : PlotIds.get(this.bottoms[i]);
+    }
+
+    /**
+     * Get the bottom plot if the road to the north of a plot is merged, otherwise null
+     */
+    public PlotId getNorthRoad(final int x, final int z) {
+        final int i = find(x, z);
+        return (i != -1) && ((this.roads[i] & NORTH) != 0) ? PlotIds.get(this.bottoms[i]) : null;
+    }
+
+    /**
+     * Get the bottom plot if the road to the west of a plot is merged, otherwise null
+     */
+    public PlotId getWestRoad(final int x, final int z) {
+        final int i = find(x, z);
+        return (i != -1) && ((this.roads[i] & WEST) != 0) ? PlotIds.get(this.bottoms[i]) : null;
+    }
+
+    /**
+     * Get the bottom plot if the road intersection to the north west of a plot is merged, otherwise null
+     */
+    public PlotId getIntersection(final int x, final int z) {
+        final int i = find(x, z);
+        return (i != -1) && (this.roads[i] == (NORTH | WEST)) ? PlotIds.get(this.bottoms[i]) : null;
+    }
+}
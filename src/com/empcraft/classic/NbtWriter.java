@@ -0,0 +1,87 @@
+package com.empcraft.classic;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the (small) subset of the NBT format needed for Anvil chunks. Tags are written straight to the stream, so
+ * compounds and lists have to be opened and closed in order.
+ */
+public class NbtWriter {
+    public static final byte TAG_END = 0;
+    public static final byte TAG_BYTE = 1;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+
+    private final DataOutputStream out;
+
+    public NbtWriter(final OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    private void writeHeader(final byte type, final String name) throws IOException {
+        this.out.writeByte(type);
+        this.out.writeUTF(name);
+    }
+
+    /**
+     * Start a named compound (the root tag of a chunk is a compound with an empty name)
+     */
+    public void startCompound(final String name) throws IOException {
+        writeHeader(TAG_COMPOUND, name);
+    }
+
+    /**
+     * End the current compound (also used to end each entry of a list of compounds, which have no header)
+     */
+    public void endCompound() throws IOException {
+        this.out.writeByte(TAG_END);
+    }
+
+    /**
+     * Start a list - exactly <i>length</i> entries of <i>type</i> must follow
+     */
+    public void startList(final String name, final byte type, final int length) throws IOException {
+        writeHeader(TAG_LIST, name);
+        this.out.writeByte(type);
+        this.out.writeInt(length);
+    }
+
+    public void writeByte(final String name, final byte value) throws IOException {
+        writeHeader(TAG_BYTE, name);
+        this.out.writeByte(value);
+    }
+
+    public void writeInt(final String name, final int value) throws IOException {
+        writeHeader(TAG_INT, name);
+        this.out.writeInt(value);
+    }
+
+    public void writeLong(final String name, final long value) throws IOException {
+        writeHeader(TAG_LONG, name);
+        this.out.writeLong(value);
+    }
+
+    public void writeByteArray(final String name, final byte[] value) throws IOException {
+        writeHeader(TAG_BYTE_ARRAY, name);
+        this.out.writeInt(value.length);
+        this.out.write(value);
+    }
+
+    public void writeIntArray(final String name, final int[] value) throws IOException {
+        writeHeader(TAG_INT_ARRAY, name);
+        this.out.writeInt(value.length);
+        for (final int i : value) {
+            this.out.writeInt(i);
+        }
+    }
+
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+}
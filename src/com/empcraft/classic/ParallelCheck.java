@@ -0,0 +1,126 @@
+package com.empcraft.classic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that chunks generated from several threads at once (as servers with async chunk generation do) are the same
+ * as chunks generated one at a time. For random world settings, a fresh template cache is filled by every thread
+ * generating the same chunks in a different order, all starting together, so they race to compile the same phases.
+ * The cache is then dropped and the chunks are generated again on one thread, and every section (ids and data) is
+ * compared. This doesn't need a server - run it with Bukkit and PlotSquared on the classpath:
+ * <p/>
+ * java -cp bukkit.jar:PlotSquared.jar:ClassicPlotGenerator.jar com.empcraft.classic.ParallelCheck [threads] [worlds] [seed]
+ */
+public class ParallelCheck {
+    private static final int MAX_HEIGHT = 256;
+    private static final int GRID = 12;
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final int worlds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        final long seed = args.length > 2 ? Long.parseLong(args[2]) : System.currentTimeMillis();
+        final Random random = new Random(seed);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        int failed = 0;
+        try {
+            for (int i = 0; i < worlds; i++) {
+                final ClassicPlotWorld plotworld = ReferenceCheck.randomWorld("parallel" + i, random);
+                final int offsetX = random.nextInt(2000) - 1000;
+                final int offsetZ = random.nextInt(2000) - 1000;
+                if (!check(executor, threads, plotworld, offsetX, offsetZ, random.nextLong())) {
+                    failed++;
+                }
+                ChunkTemplateCache.release(plotworld.worldname);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println("Checked " + worlds + " worlds of " + (GRID * GRID) + " chunks on " + threads + " threads (seed " + seed + "): " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static boolean check(final ExecutorService executor, final int threads, final ClassicPlotWorld plotworld, final int offsetX, final int offsetZ, final long seed) throws InterruptedException {
+        final List<int[]> chunks = new ArrayList<int[]>();
+        for (int x = 0; x < GRID; x++) {
+            for (int z = 0; z < GRID; z++) {
+                chunks.add(new int[]{offsetX + x, offsetZ + z});
+            }
+        }
+
+        // Every thread gets its own order, and they all start at once on a fresh cache
+        ChunkTemplateCache.release(plotworld.worldname);
+        final ClassicChunkBuilder shared = new ClassicChunkBuilder(plotworld);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<short[][][]>> futures = new ArrayList<Future<short[][][]>>();
+        final List<byte[][][]> data = new ArrayList<byte[][][]>();
+        for (int t = 0; t < threads; t++) {
+            final List<int[]> order = new ArrayList<int[]>(chunks);
+            Collections.shuffle(order, new Random(seed + t));
+            final byte[][][] threadData = new byte[chunks.size()][][];
+            data.add(threadData);
+            futures.add(executor.submit(new Callable<short[][][]>() {
+                @Override
+                public short[][][] call() throws InterruptedException {
+                    start.await();
+                    final short[][][] result = new short[chunks.size()][][];
+                    for (final int[] chunk : order) {
+                        final int index = chunks.indexOf(chunk);
+                        result[index] = shared.getSections(chunk[0], chunk[1], MAX_HEIGHT >> 4);
+                        threadData[index] = shared.getTemplate(chunk[0], chunk[1]).data;
+                    }
+                    return result;
+                }
+            }));
+        }
+        start.countDown();
+        final List<short[][][]> results = new ArrayList<short[][][]>();
+        for (final Future<short[][][]> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (final ExecutionException e) {
+                System.out.println(describe(plotworld) + ": generation failed");
+                e.getCause().printStackTrace();
+                return false;
+            }
+        }
+
+        // The same chunks, one at a time, from scratch
+        ChunkTemplateCache.release(plotworld.worldname);
+        final ClassicChunkBuilder serial = new ClassicChunkBuilder(plotworld);
+        for (int c = 0; c < chunks.size(); c++) {
+            final int[] chunk = chunks.get(c);
+            final short[][] expected = serial.getSections(chunk[0], chunk[1], MAX_HEIGHT >> 4);
+            final byte[][] expectedData = serial.getTemplate(chunk[0], chunk[1]).data;
+            for (int t = 0; t < threads; t++) {
+                final short[][] actual = results.get(t)[c];
+                final byte[][] actualData = data.get(t)[c];
+                for (int s = 0; s < expected.length; s++) {
+                    if (!Arrays.equals(expected[s], actual[s])) {
+                        System.out.println(describe(plotworld) + " chunk " + chunk[0] + "," + chunk[1] + ": section " + s + " differs on thread " + t);
+                        return false;
+                    }
+                }
+                if (!Arrays.deepEquals(expectedData, actualData)) {
+                    System.out.println(describe(plotworld) + " chunk " + chunk[0] + "," + chunk[1] + ": data differs on thread " + t);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String describe(final ClassicPlotWorld plotworld) {
+        return "[plot " + plotworld.PLOT_WIDTH + ", road " + plotworld.ROAD_WIDTH + ", heights " + plotworld.PLOT_HEIGHT + "/" + plotworld.ROAD_HEIGHT + "/" + plotworld.WALL_HEIGHT + ", stripes " + plotworld.ROAD_STRIPES_ENABLED + "]";
+    }
+}
@@ -0,0 +1,62 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A 16x16x16 tile of random palette indexes, used instead of drawing a random block for every position when a world
+ * has a multi-block plot filling or floor. The tile is seeded from the palette itself and looked up with the low 4 bits
+ * of each coordinate, so a position always gets the same block - whether it was generated or reset by a plot clear -
+ * and a chunk only depends on its phase, which lets multi-block worlds use the chunk templates as well.
+ */
+public class PatternTile {
+    /**
+     * Tiles for every palette in use
+     */
+    private static final ConcurrentHashMap<String, PatternTile> tiles = new ConcurrentHashMap<String, PatternTile>();
+
+    private final PlotBlock[] blocks;
+    private final byte[] indexes;
+
+    private PatternTile(final PlotBlock[] blocks, final long seed) {
+        this.blocks = blocks;
+        this.indexes = new byte[4096];
+        if (blocks.length > 1) {
+            final XorShiftRandom random = new XorShiftRandom(seed);
+            for (int i = 0; i < 4096; i++) {
+                this.indexes[i] = (byte) random.random(blocks.length);
+            }
+        }
+    }
+
+    /**
+     * Get the tile for a palette
+     */
+    public static PatternTile get(final PlotBlock[] blocks) {
+        final StringBuilder builder = new StringBuilder();
+        // A non zero seed (xorshift would never leave 0), derived from the palette so it's the same after a restart
+        long seed = 1125899906842597L;
+        for (final PlotBlock block : blocks) {
+            builder.append(block.id).append(':').append(block.data).append(',');
+            seed = (31 * seed) + (block.id << 4) + block.data;
+        }
+        final String key = builder.toString();
+        PatternTile tile = tiles.get(key);
+        if (tile == null) {
+            tile = new PatternTile(blocks, seed == 0 ? 1 : seed);
+            final PatternTile existing = tiles.putIfAbsent(key, tile);
+            if (existing != null) {
+                tile = existing;
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Get the block at a world (or chunk) position
+     */
+    public PlotBlock getBlock(final int x, final int y, final int z) {
+        return this.blocks[this.indexes[((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF)]];
+    }
+}
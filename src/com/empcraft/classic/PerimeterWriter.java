@@ -0,0 +1,89 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * Writes the ring of columns around a plot (its wall and wall filling) a chunk at a time. Each chunk is looked up once,
+ * its columns are read and written through it, and blocks which already hold the target are left alone - so a ring
+ * which is already right only costs reads.
+ */
+@SuppressWarnings("deprecation") public class PerimeterWriter {
+
+    /**
+     * Get the chunks (packed x << 32 | z) which the edge of a rectangle goes through
+     */
+    public static long[] getChunks(final int x1, final int z1, final int x2, final int z2) {
+        final int cx1 = x1 >> 4;
+        final int cx2 = x2 >> 4;
+        final int cz1 = z1 >> 4;
+        final int cz2 = z2 >> 4;
+        final int width = (cx2 - cx1) + 1;
+        final int length = (cz2 - cz1) + 1;
+        final long[] chunks = new long[(width < 3) || (length < 3) ? width * length : 2 * (width + length) - 4];
+        int i = 0;
+        for (int cx = cx1; cx <= cx2; cx++) {
+            if ((cx == cx1) || (cx == cx2)) {
+                for (int cz = cz1; cz <= cz2; cz++) {
+                    chunks[i++] = ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+                }
+            } else {
+                // Chunks in between only have the north and south sides going through them
+                chunks[i++] = ((long) cx << 32) | (cz1 & 0xFFFFFFFFL);
+                if (cz2 != cz1) {
+                    chunks[i++] = ((long) cx << 32) | (cz2 & 0xFFFFFFFFL);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Set y1 to y2 (exclusive) of the columns on the edge of the rectangle x1, z1 to x2, z2 (inclusive) which are in
+     * one chunk
+     *
+     * @return the number of blocks changed
+     */
+    public static int setChunk(final World world, final int cx, final int cz, final int x1, final int z1, final int x2, final int z2, final int y1, final int y2, final PlotBlock block) {
+        final int minX = Math.max(x1, cx << 4);
+        final int maxX = Math.min(x2, (cx << 4) + 15);
+        final int minZ = Math.max(z1, cz << 4);
+        final int maxZ = Math.min(z2, (cz << 4) + 15);
+        if ((minX > maxX) || (minZ > maxZ)) {
+            return 0;
+        }
+        final int bottom = Math.max(0, y1);
+        final int top = Math.min(world.getMaxHeight(), y2);
+        final Chunk chunk = world.getChunkAt(cx, cz);
+        int changed = 0;
+        for (int x = minX; x <= maxX; x++) {
+            if ((x == x1) || (x == x2)) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    changed += setColumn(chunk, x & 0xF, z & 0xF, bottom, top, block);
+                }
+            } else {
+                if (minZ == z1) {
+                    changed += setColumn(chunk, x & 0xF, z1 & 0xF, bottom, top, block);
+                }
+                if ((maxZ == z2) && (z2 != z1)) {
+                    changed += setColumn(chunk, x & 0xF, z2 & 0xF, bottom, top, block);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static int setColumn(final Chunk chunk, final int x, final int z, final int y1, final int y2, final PlotBlock target) {
+        int changed = 0;
+        for (int y = y1; y < y2; y++) {
+            final Block block = chunk.getBlock(x, y, z);
+            if ((block.getTypeId() != target.id) || (block.getData() != target.data)) {
+                block.setTypeIdAndData(target.id, target.data, false);
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
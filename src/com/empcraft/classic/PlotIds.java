@@ -0,0 +1,39 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotId;
+
+/**
+ * Plot ids packed into a long, so the plot at a location can be found and compared without allocating. PlotId is
+ * mutable (callers may change x and y), so ids are only kept packed - a new PlotId is made each time one is asked for.
+ */
+public class PlotIds {
+
+    /**
+     * Pack a plot id into a long (x in the high 32 bits, z in the low 32 bits)
+     */
+    public static long pack(final int x, final int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    public static int getX(final long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int getZ(final long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Get a new PlotId for a packed id, or null for ClassicLayout.ROAD_ID
+     */
+    public static PlotId get(final long packed) {
+        if (packed == ClassicLayout.ROAD_ID) {
+            return null;
+        }
+        return new PlotId(getX(packed), getZ(packed));
+    }
+
+    public static PlotId get(final int x, final int z) {
+        return new PlotId(x, z);
+    }
+}
@@ -0,0 +1,152 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.object.PlotBlock;
+
+import java.util.Random;
+
+/**
+ * Checks the blocks and data values from ClassicChunkBuilder (which the generator and the populator use) against
+ * ClassicReference, for random world settings and random chunks. Worlds on the old cuboid cascade (the default) are
+ * checked against the cascade run for that one chunk instead, which is what the old generator and populator did - so
+ * sharing a template between chunks of the same phase mustn't change anything. This doesn't need a server - run it with Bukkit and PlotSquared on the classpath:
+ * <p/>
+ * java -cp bukkit.jar:PlotSquared.jar:ClassicPlotGenerator.jar com.empcraft.classic.ReferenceCheck [worlds] [seed]
+ */
+public class ReferenceCheck {
+    private static final int MAX_HEIGHT = 256;
+    private static final int CHUNKS_PER_WORLD = 8;
+
+    public static void main(final String[] args) {
+        final int worlds = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : System.currentTimeMillis();
+        final Random random = new Random(seed);
+
+        int failed = 0;
+        for (int i = 0; i < worlds; i++) {
+            final ClassicPlotWorld plotworld = randomWorld("check" + i, random);
+            for (int j = 0; j < CHUNKS_PER_WORLD; j++) {
+                final int cx = random.nextInt(2000) - 1000;
+                final int cz = random.nextInt(2000) - 1000;
+                if (!check(plotworld, cx, cz)) {
+                    failed++;
+                }
+            }
+        }
+        ChunkMetrics.unregisterAll();
+        System.out.println("Checked " + (worlds * CHUNKS_PER_WORLD) + " chunks (seed " + seed + "): " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Random settings, including the edge cases (no road, roads too narrow for stripes, walls below the plots)
+     */
+    static ClassicPlotWorld randomWorld(final String name, final Random random) {
+        final ClassicPlotWorld plotworld = new ClassicPlotWorld(name);
+        plotworld.PLOT_WIDTH = 1 + random.nextInt(64);
+        plotworld.ROAD_WIDTH = random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(16);
+        plotworld.PLOT_HEIGHT = 1 + random.nextInt(128);
+        plotworld.ROAD_HEIGHT = 1 + random.nextInt(128);
+        plotworld.WALL_HEIGHT = 1 + random.nextInt(128);
+        plotworld.ROAD_STRIPES_ENABLED = random.nextBoolean();
+        plotworld.TABLE_LAYOUT = random.nextBoolean();
+        plotworld.MAIN_BLOCK = randomPalette(random);
+        plotworld.TOP_BLOCK = randomPalette(random);
+        plotworld.WALL_BLOCK = randomBlock(random);
+        plotworld.CLAIMED_WALL_BLOCK = randomBlock(random);
+        plotworld.WALL_FILLING = randomBlock(random);
+        plotworld.ROAD_BLOCK = randomBlock(random);
+        plotworld.ROAD_STRIPES = randomBlock(random);
+        return plotworld;
+    }
+
+    private static PlotBlock[] randomPalette(final Random random) {
+        final PlotBlock[] blocks = new PlotBlock[random.nextInt(3) == 0 ? 2 + random.nextInt(3) : 1];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = randomBlock(random);
+        }
+        return blocks;
+    }
+
+    private static PlotBlock randomBlock(final Random random) {
+        return new PlotBlock((short) (1 + random.nextInt(170)), (byte) (random.nextBoolean() ? 0 : random.nextInt(16)));
+    }
+
+    /**
+     * Build a chunk, then compare every block with the reference. The first difference is printed.
+     */
+    static boolean check(final ClassicPlotWorld plotworld, final int cx, final int cz) {
+        if (!plotworld.TABLE_LAYOUT) {
+            return checkCascade(plotworld, cx, cz);
+        }
+        final ClassicReference reference = new ClassicReference(plotworld);
+        final ClassicChunkBuilder builder = new ClassicChunkBuilder(plotworld);
+        final short[][] sections = builder.getSections(cx, cz, MAX_HEIGHT >> 4);
+        final MemoryBlockSink data = populate(plotworld, builder, cx, cz);
+
+        final int X = cx << 4;
+        final int Z = cz << 4;
+        for (int y = 0; y < MAX_HEIGHT; y++) {
+            final short[] section = sections[y >> 4];
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    final int i = ((y & 0xF) << 8) | (z << 4) | x;
+                    final short id = section == null ? 0 : section[i];
+                    final byte val = data.getData(X + x, y, Z + z);
+                    if (!reference.matches(X + x, y, Z + z, id, val)) {
+                        System.out.println(describe(plotworld) + " chunk " + cx + "," + cz + ": " + id + ":" + val + " at " + (X + x) + "," + y + "," + (Z + z) + " (column " + reference.getColumn(X + x, Z + z) + ")");
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build a chunk of a world on the old cascade, then compare every block with the cascade's own output for that
+     * chunk. The first difference is printed.
+     */
+    static boolean checkCascade(final ClassicPlotWorld plotworld, final int cx, final int cz) {
+        final ClassicCascade cascade = new ClassicCascade(plotworld);
+        final ClassicChunkBuilder builder = new ClassicChunkBuilder(plotworld);
+        // Warm the template cache with another chunk of the same phase, so the chunk is built from a shared template
+        final int size = plotworld.PLOT_WIDTH + plotworld.ROAD_WIDTH;
+        builder.getTemplate(cx + size, cz - size);
+        final short[][] sections = builder.getSections(cx, cz, MAX_HEIGHT >> 4);
+        final MemoryBlockSink data = populate(plotworld, builder, cx, cz);
+
+        final short[][] expected = new short[MAX_HEIGHT >> 4][];
+        final ChunkDataBuffer expectedData = new ChunkDataBuffer(MAX_HEIGHT >> 4);
+        cascade.generate(expected, cx, cz);
+        cascade.populate(expectedData, cx, cz);
+        for (int y = 0; y < MAX_HEIGHT; y++) {
+            final short[] section = sections[y >> 4];
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    final int i = ((y & 0xF) << 8) | (z << 4) | x;
+                    final short id = section == null ? 0 : section[i];
+                    final byte val = data.getData((cx << 4) + x, y, (cz << 4) + z);
+                    final short expectedId = expected[y >> 4] == null ? 0 : expected[y >> 4][i];
+                    if ((id != expectedId) || (val != expectedData.get(x, y, z))) {
+                        System.out.println(describe(plotworld) + " (cascade) chunk " + cx + "," + cz + ": " + id + ":" + val + " at " + ((cx << 4) + x) + "," + y + "," + ((cz << 4) + z) + ", expected " + expectedId + ":" + expectedData.get(x, y, z));
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Run the populator for a chunk into an empty in-memory world, to read back the data values it sets
+     */
+    private static MemoryBlockSink populate(final ClassicPlotWorld plotworld, final ClassicChunkBuilder builder, final int cx, final int cz) {
+        final MemoryBlockSink sink = new MemoryBlockSink(MAX_HEIGHT);
+        new ClassicPop(plotworld, builder).populate(sink, cx, cz);
+        return sink;
+    }
+
+    private static String describe(final ClassicPlotWorld plotworld) {
+        return "[plot " + plotworld.PLOT_WIDTH + ", road " + plotworld.ROAD_WIDTH + ", heights " + plotworld.PLOT_HEIGHT + "/" + plotworld.ROAD_HEIGHT + "/" + plotworld.WALL_HEIGHT + ", stripes " + plotworld.ROAD_STRIPES_ENABLED + "]";
+    }
+}
@@ -0,0 +1,296 @@
+package com.empcraft.classic;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the Anvil region files (.mca) for a classic plot world straight to disk, without a server. The terrain is
+ * fully determined by the world settings, so chunks come from the same ClassicChunkBuilder templates (ids and data) the
+ * generator uses. Each region is generated, compressed and written by one worker of a thread pool.
+ * <p/>
+ * java -cp bukkit.jar:PlotSquared.jar:ClassicPlotGenerator.jar com.empcraft.classic.RegionPregenerator
+ * &lt;settings.yml&gt; &lt;world&gt; &lt;region folder&gt; &lt;min plot x&gt; &lt;min plot z&gt; &lt;max plot x&gt; &lt;max plot z&gt;
+ * [threads] [biome id]
+ * <p/>
+ * Existing region files are never overwritten. The biome id defaults to 4 (forest, the default plot biome).
+ */
+public class RegionPregenerator {
+    private static final int SECTIONS = 16;
+    private static final int SECTOR = 4096;
+
+    private final ClassicPlotWorld plotworld;
+    private final ClassicChunkBuilder builder;
+    private final File folder;
+    private final byte biome;
+
+    public RegionPregenerator(final ClassicPlotWorld plotworld, final File folder, final byte biome) {
+        this.plotworld = plotworld;
+        this.builder = new ClassicChunkBuilder(plotworld);
+        this.folder = folder;
+        this.biome = biome;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 7) {
+            System.out.println("Usage: RegionPregenerator <settings.yml> <world> <region folder> <min plot x> <min plot z> <max plot x> <max plot z> [threads] [biome id]");
+            System.exit(1);
+        }
+        final ConfigurationSection config = YamlConfiguration.loadConfiguration(new File(args[0])).getConfigurationSection("worlds." + args[1]);
+        if ((config == null) || !config.contains("plot.height")) {
+            System.out.println("No classic plot world settings found for " + args[1] + " in " + args[0]);
+            System.exit(1);
+        }
+        final ClassicPlotWorld plotworld = new ClassicPlotWorld(args[1]);
+        plotworld.loadConfiguration(config);
+
+        final File folder = new File(args[2]);
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            System.out.println("Could not create " + folder);
+            System.exit(1);
+        }
+        final int threads = args.length > 7 ? Integer.parseInt(args[7]) : Runtime.getRuntime().availableProcessors();
+        // Biome ids go up to 255 (e.g. the mutated biomes), so they're read as an int and stored as an unsigned byte
+        final int biome = args.length > 8 ? Integer.parseInt(args[8]) : 4;
+        if ((biome < 0) || (biome > 255)) {
+            System.out.println("Biome id must be between 0 and 255, not " + biome);
+            System.exit(1);
+        }
+
+        final RegionPregenerator generator = new RegionPregenerator(plotworld, folder, (byte) biome);
+        final long start = System.currentTimeMillis();
+        final int chunks = generator.generatePlots(Integer.parseInt(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]), threads);
+        final long time = Math.max(1, System.currentTimeMillis() - start);
+        System.out.println("Generated " + chunks + " chunks in " + time + "ms (" + ((chunks * 1000L) / time) + " chunks/s)");
+    }
+
+    /**
+     * Generate every chunk touching a range of plots (and the roads around them)
+     *
+     * @return the number of chunks written
+     */
+    public int generatePlots(final int minPlotX, final int minPlotZ, final int maxPlotX, final int maxPlotZ, final int threads) throws InterruptedException, ExecutionException {
+        final int size = this.plotworld.PLOT_WIDTH + this.plotworld.ROAD_WIDTH;
+        // the bottom wall of a plot is at (id * size) - PLOT_WIDTH - floor(ROAD_WIDTH / 2) - 1, see getPlotBottomLocAbs
+        final int offset = this.plotworld.PLOT_WIDTH + (this.plotworld.ROAD_WIDTH / 2) + 1;
+        final int minX = ((minPlotX * size) - offset) - this.plotworld.ROAD_WIDTH;
+        final int minZ = ((minPlotZ * size) - offset) - this.plotworld.ROAD_WIDTH;
+        final int maxX = (((maxPlotX + 1) * size) - offset) + this.plotworld.ROAD_WIDTH;
+        final int maxZ = (((maxPlotZ + 1) * size) - offset) + this.plotworld.ROAD_WIDTH;
+        return generate(minX >> 4, minZ >> 4, maxX >> 4, maxZ >> 4, threads);
+    }
+
+    /**
+     * Generate a range of chunks (inclusive), one region per task
+     *
+     * @return the number of chunks written
+     */
+    public int generate(final int minCX, final int minCZ, final int maxCX, final int maxCZ, final int threads) throws InterruptedException, ExecutionException {
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        final List<Future<Integer>> tasks = new ArrayList<Future<Integer>>();
+        final int regions = (((maxCX >> 5) - (minCX >> 5)) + 1) * (((maxCZ >> 5) - (minCZ >> 5)) + 1);
+        final AtomicInteger done = new AtomicInteger();
+        for (int rx = minCX >> 5; rx <= (maxCX >> 5); rx++) {
+            for (int rz = minCZ >> 5; rz <= (maxCZ >> 5); rz++) {
+                final int regionX = rx;
+                final int regionZ = rz;
+                tasks.add(pool.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        final int count = generateRegion(regionX, regionZ, minCX, minCZ, maxCX, maxCZ);
+                        System.out.println("r." + regionX + "." + regionZ + ".mca: " + count + " chunks (" + done.incrementAndGet() + "/" + regions + ")");
+                        return count;
+                    }
+                }));
+            }
+        }
+        pool.shutdown();
+        int chunks = 0;
+        try {
+            for (final Future<Integer> task : tasks) {
+                chunks += task.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return chunks;
+    }
+
+    /**
+     * Generate and write the chunks of one region which are inside the chunk range
+     */
+    int generateRegion(final int rx, final int rz, final int minCX, final int minCZ, final int maxCX, final int maxCZ) throws IOException {
+        final File file = new File(this.folder, "r." + rx + "." + rz + ".mca");
+        if (file.exists()) {
+            System.out.println("Skipping " + file.getName() + " (it already exists)");
+            return 0;
+        }
+        // chunks are very repetitive, so the fastest level compresses almost as well as the default
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final byte[][] chunks = new byte[1024][];
+        int count = 0;
+        for (int x = 0; x < 32; x++) {
+            final int cx = (rx << 5) + x;
+            if ((cx < minCX) || (cx > maxCX)) {
+                continue;
+            }
+            for (int z = 0; z < 32; z++) {
+                final int cz = (rz << 5) + z;
+                if ((cz < minCZ) || (cz > maxCZ)) {
+                    continue;
+                }
+                chunks[x | (z << 5)] = writeChunk(cx, cz, deflater);
+                count++;
+            }
+        }
+        deflater.end();
+        writeRegion(file, chunks);
+        return count;
+    }
+
+    /**
+     * Write a region file: the location table, an (empty) timestamp table, then every chunk padded to whole sectors
+     */
+    private static void writeRegion(final File file, final byte[][] chunks) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[chunks.length + 1];
+        final ByteBuffer header = ByteBuffer.allocate(SECTOR * 2);
+        int sector = 2;
+        for (int i = 0; i < chunks.length; i++) {
+            final byte[] chunk = chunks[i];
+            if (chunk == null) {
+                buffers[i + 1] = ByteBuffer.allocate(0);
+                continue;
+            }
+            // 4 byte length, 1 byte compression type, data
+            final int sectors = ((chunk.length + 5) + (SECTOR - 1)) / SECTOR;
+            if (sectors > 255) {
+                throw new IOException("Chunk " + i + " of " + file.getName() + " is too large");
+            }
+            header.putInt(i * 4, (sector << 8) | sectors);
+            final ByteBuffer buffer = ByteBuffer.allocate(sectors * SECTOR);
+            buffer.putInt(chunk.length + 1);
+            buffer.put((byte) 2);
+            buffer.put(chunk);
+            buffer.rewind();
+            buffers[i + 1] = buffer;
+            sector += sectors;
+        }
+        buffers[0] = header;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long remaining = (long) sector * SECTOR;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+        }
+    }
+
+    /**
+     * Build the NBT for a chunk and compress it (zlib)
+     */
+    private byte[] writeChunk(final int cx, final int cz, final Deflater deflater) throws IOException {
+        // the compact template sections and data nibbles are used directly, there's no need to expand them
+        final ChunkTemplate template = this.builder.getTemplate(cx, cz);
+        final CompactSection[] sections = template.sections;
+        final int height = Math.min(sections.length, SECTIONS);
+
+        final int[] heightMap = new int[256];
+        for (int i = 0; i < 256; i++) {
+            for (int y = (height << 4) - 1; y >= 0; y--) {
+                final CompactSection section = sections[y >> 4];
+                if ((section != null) && (section.get(((y & 0xF) << 8) | i) != 0)) {
+                    heightMap[i] = y + 1;
+                    break;
+                }
+            }
+        }
+        final byte[] biomes = new byte[256];
+        Arrays.fill(biomes, this.biome);
+
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            if (sections[y] != null) {
+                count++;
+            }
+        }
+
+        deflater.reset();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        final DeflaterOutputStream compressed = new DeflaterOutputStream(bytes, deflater);
+        final NbtWriter nbt = new NbtWriter(new BufferedOutputStream(compressed, 8192));
+        nbt.startCompound("");
+        nbt.startCompound("Level");
+        nbt.writeInt("xPos", cx);
+        nbt.writeInt("zPos", cz);
+        nbt.writeLong("LastUpdate", 0);
+        nbt.writeLong("InhabitedTime", 0);
+        nbt.writeByte("V", (byte) 1);
+        // the data has been set already, so the populators mustn't run again - lighting is recalculated on load
+        nbt.writeByte("TerrainPopulated", (byte) 1);
+        nbt.writeByte("LightPopulated", (byte) 0);
+        nbt.writeByteArray("Biomes", biomes);
+        nbt.writeIntArray("HeightMap", heightMap);
+        nbt.startList("Sections", NbtWriter.TAG_COMPOUND, count);
+        for (int y = 0; y < height; y++) {
+            final CompactSection section = sections[y];
+            if (section != null) {
+                writeSection(nbt, y, section, template.data[y], heightMap);
+            }
+        }
+        nbt.startList("Entities", NbtWriter.TAG_COMPOUND, 0);
+        nbt.startList("TileEntities", NbtWriter.TAG_COMPOUND, 0);
+        nbt.endCompound();
+        nbt.endCompound();
+        nbt.flush();
+        compressed.finish();
+        return bytes.toByteArray();
+    }
+
+    private static void writeSection(final NbtWriter nbt, final int y, final CompactSection section, final byte[] data, final int[] heightMap) throws IOException {
+        final byte[] blocks = new byte[4096];
+        final byte[] add = new byte[2048];
+        boolean hasAdd = false;
+        for (int i = 0; i < 4096; i++) {
+            final short id = section.get(i);
+            blocks[i] = (byte) id;
+            if (id > 255) {
+                add[i >> 1] |= ((id >> 8) & 0xF) << ((i & 1) << 2);
+                hasAdd = true;
+            }
+        }
+        // the sky is fully lit down to the highest block of each column
+        final byte[] skyLight = new byte[2048];
+        final int bottom = y << 4;
+        for (int i = 0; i < 4096; i++) {
+            if ((bottom + (i >> 8)) >= heightMap[i & 0xFF]) {
+                skyLight[i >> 1] |= 0xF << ((i & 1) << 2);
+            }
+        }
+        nbt.writeByte("Y", (byte) y);
+        nbt.writeByteArray("Blocks", blocks);
+        if (hasAdd) {
+            nbt.writeByteArray("Add", add);
+        }
+        nbt.writeByteArray("Data", data == null ? new byte[2048] : data);
+        nbt.writeByteArray("BlockLight", new byte[2048]);
+        nbt.writeByteArray("SkyLight", skyLight);
+        nbt.endCompound();
+    }
+}
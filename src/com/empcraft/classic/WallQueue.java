@@ -0,0 +1,192 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.PlotMain;
+import com.intellectualcrafters.plot.object.PlotBlock;
+import com.intellectualcrafters.plot.object.PlotId;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall and wall filling changes waiting to be written to a world. Rings are queued by plot and layer - queueing a ring
+ * replaces the one already waiting for the same plot and layer (e.g. the claimed wall of a plot which is cleared
+ * straight after), so only the newest is written. Pending rings are grouped by chunk, and each tick chunks are written
+ * one at a time - every ring going through a chunk together - until the time budget is used (always at least one
+ * chunk). The ticking task only exists while there are changes waiting. Main thread only.
+ */
+public class WallQueue implements Runnable {
+    private static final HashMap<String, WallQueue> worlds = new HashMap<String, WallQueue>();
+
+    private static Plugin plugin;
+    private static long budget = 2000000L;
+
+    private final String world;
+    private final HashMap<PlotId, Ring> walls = new HashMap<PlotId, Ring>();
+    private final HashMap<PlotId, Ring> fillings = new HashMap<PlotId, Ring>();
+    /**
+     * The rings going through each chunk, in the order they were queued
+     */
+    private final LinkedHashMap<Long, ArrayList<Ring>> chunks = new LinkedHashMap<Long, ArrayList<Ring>>();
+    private int task = -1;
+
+    private WallQueue(final String world) {
+        this.world = world;
+    }
+
+    /**
+     * Set the plugin to schedule with, and the time (ms) which can be spent writing walls each tick
+     */
+    public static void configure(final Plugin plugin, final int budgetMs) {
+        WallQueue.plugin = plugin;
+        WallQueue.budget = Math.max(1, budgetMs) * 1000000L;
+    }
+
+    public static WallQueue get(final World world) {
+        WallQueue queue = worlds.get(world.getName());
+        if (queue == null) {
+            queue = new WallQueue(world.getName());
+            worlds.put(world.getName(), queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Write everything still queued right away (e.g. when the plugin is disabled)
+     */
+    public static void flushAll() {
+        for (final WallQueue queue : worlds.values()) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * Queue setting y1 to y2 (exclusive) of the ring around a plot, which has the corners x1, z1 and x2, z2 (inclusive)
+     *
+     * @param filling whether this is the wall filling rather than the wall (they're queued separately)
+     */
+    public void queue(final PlotId id, final boolean filling, final int x1, final int z1, final int x2, final int z2, final int y1, final int y2, final PlotBlock block) {
+        final Ring ring = new Ring(id, filling, x1, z1, x2, z2, y1, y2, block);
+        final Ring previous = (filling ? this.fillings : this.walls).put(id, ring);
+        if (previous != null) {
+            previous.superseded = true;
+        }
+        for (final long chunk : PerimeterWriter.getChunks(x1, z1, x2, z2)) {
+            ArrayList<Ring> rings = this.chunks.get(chunk);
+            if (rings == null) {
+                rings = new ArrayList<Ring>(2);
+                this.chunks.put(chunk, rings);
+            }
+            rings.add(ring);
+            ring.remaining++;
+        }
+        if (this.task == -1) {
+            this.task = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin != null ? plugin : PlotMain.getMain(), this, 1L, 1L);
+        }
+    }
+
+    public void flush() {
+        final World world = Bukkit.getWorld(this.world);
+        while (!this.chunks.isEmpty()) {
+            step(world);
+        }
+        stop();
+    }
+
+    /**
+     * Write everything queued for the chunks overlapping an area (inclusive) right away - before writing anything else
+     * there, so a wall still waiting can't be written back over it later
+     */
+    public void flush(final int x1, final int z1, final int x2, final int z2) {
+        if (this.chunks.isEmpty()) {
+            return;
+        }
+        final World world = Bukkit.getWorld(this.world);
+        final Iterator<Map.Entry<Long, ArrayList<Ring>>> iterator = this.chunks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, ArrayList<Ring>> entry = iterator.next();
+            final int cx = (int) (entry.getKey() >> 32);
+            final int cz = (int) entry.getKey().longValue();
+            if ((cx >= (x1 >> 4)) && (cx <= (x2 >> 4)) && (cz >= (z1 >> 4)) && (cz <= (z2 >> 4))) {
+                iterator.remove();
+                write(world, cx, cz, entry.getValue());
+            }
+        }
+        if (this.chunks.isEmpty()) {
+            stop();
+        }
+    }
+
+    @Override
+    public void run() {
+        final long end = System.nanoTime() + budget;
+        final World world = Bukkit.getWorld(this.world);
+        do {
+            step(world);
+        } while (!this.chunks.isEmpty() && (System.nanoTime() < end));
+        if (this.chunks.isEmpty()) {
+            stop();
+        }
+    }
+
+    /**
+     * Write the rings going through the next chunk
+     */
+    private void step(final World world) {
+        final Iterator<Map.Entry<Long, ArrayList<Ring>>> iterator = this.chunks.entrySet().iterator();
+        final Map.Entry<Long, ArrayList<Ring>> entry = iterator.next();
+        iterator.remove();
+        write(world, (int) (entry.getKey() >> 32), (int) entry.getKey().longValue(), entry.getValue());
+    }
+
+    /**
+     * Write the rings going through a chunk, in the order they were queued
+     */
+    private void write(final World world, final int cx, final int cz, final ArrayList<Ring> rings) {
+        for (final Ring ring : rings) {
+            if (ring.superseded) {
+                continue;
+            }
+            // The world may have been unloaded - the rings are dropped
+            if (world != null) {
+                PerimeterWriter.setChunk(world, cx, cz, ring.x1, ring.z1, ring.x2, ring.z2, ring.y1, ring.y2, ring.block);
+            }
+            if (--ring.remaining == 0) {
+                (ring.filling ? this.fillings : this.walls).remove(ring.id);
+            }
+        }
+    }
+
+    private void stop() {
+        if (this.task != -1) {
+            Bukkit.getScheduler().cancelTask(this.task);
+            this.task = -1;
+        }
+    }
+
+    private static class Ring {
+        private final PlotId id;
+        private final boolean filling;
+        private final int x1, z1, x2, z2, y1, y2;
+        private final PlotBlock block;
+        private int remaining;
+        private boolean superseded;
+
+        private Ring(final PlotId id, final boolean filling, final int x1, final int z1, final int x2, final int z2, final int y1, final int y2, final PlotBlock block) {
+            this.id = id;
+            this.filling = filling;
+            this.x1 = x1;
+            this.z1 = z1;
+            this.x2 = x2;
+            this.z2 = z2;
+            this.y1 = y1;
+            this.y2 = y2;
+            this.block = block;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.empcraft.classic;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * An ordered list of work units, e.g. everything needed to clear one plot. Areas are split into units of at most
+ * WorkQueue.getUnitBlocks() blocks, one chunk column at a time, so no single unit can hold up a tick.
+ * <p/>
+ * Units may hand work off to other threads (e.g. to diff a chunk snapshot), which then add more units. The job stays
+ * queued until all of that has come back.
+ * <p/>
+ * Once submitted, the job is also the handle for the work: it reports progress in blocks, can be cancelled, and runs
+ * its listeners on the main thread right after its last unit is applied (or once it's cancelled or has failed). Don't
+ * call get() on the main thread - the job can't finish while it's waiting.
+ */
+public class WorkJob implements Future<Void> {
+    private final ArrayDeque<WorkUnit> units = new ArrayDeque<WorkUnit>();
+    private final ArrayList<Runnable> listeners = new ArrayList<Runnable>();
+    /**
+     * Units added by other threads, moved to units by the main thread
+     */
+    private final ConcurrentLinkedQueue<WorkUnit> arrived = new ConcurrentLinkedQueue<WorkUnit>();
+    private final AtomicInteger pending = new AtomicInteger();
+    public final World world;
+
+    private final AtomicLong total = new AtomicLong();
+    private volatile long done;
+    private volatile Throwable asyncFailure;
+    private volatile boolean cancelled;
+    private boolean finished;
+    private Throwable failure;
+
+    public WorkJob(final World world) {
+        this.world = world;
+    }
+
+    public void add(final WorkUnit unit) {
+        this.units.add(unit);
+        this.total.addAndGet(unit.blocks);
+    }
+
+    /**
+     * Some of this job is being worked on by another thread, which will call deliver or fail when it's done
+     */
+    void fork() {
+        this.pending.incrementAndGet();
+    }
+
+    /**
+     * Add the units worked out by another thread (any thread)
+     */
+    void deliver(final List<WorkUnit> units) {
+        for (final WorkUnit unit : units) {
+            this.total.addAndGet(unit.blocks);
+        }
+        this.arrived.addAll(units);
+        this.pending.decrementAndGet();
+    }
+
+    /**
+     * Work done by another thread failed (any thread) - the job stops
+     */
+    void fail(final Throwable failure) {
+        this.asyncFailure = failure;
+        this.pending.decrementAndGet();
+    }
+
+    /**
+     * Rewrite the columns of an area (the max coordinates are exclusive) from the top to the bottom of the world, with
+     * the blocks the generator would place there. The area is cut at chunk borders, so chunks entirely inside it are
+     * written whole, and each piece is written from the compiled template of its chunk. Sections which should be air
+     * and already are empty are skipped.
+     */
+    public void addTemplate(final ClassicChunkBuilder builder, final int x1, final int z1, final int x2, final int z2) {
+        final int height = this.world.getMaxHeight();
+        final int max = WorkQueue.getUnitBlocks();
+        for (int x = x1; x < x2; x = (x & ~15) + 16) {
+            final int endX = Math.min(x2, (x & ~15) + 16);
+            for (int z = z1; z < z2; z = (z & ~15) + 16) {
+                final int endZ = Math.min(z2, (z & ~15) + 16);
+                final ChunkTemplate template = builder.getTemplate(x >> 4, z >> 4);
+                final TemplateChunk chunk = new TemplateChunk(this.world, x >> 4, z >> 4);
+                final int area = (endX - x) * (endZ - z);
+                final int layers = Math.max(1, max / area);
+                for (int y = 0; y < height; y += layers) {
+                    add(new Template(chunk, template, x, y, z, endX, Math.min(height, y + layers), endZ));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the walls waiting in the WallQueue around a rectangle (inclusive), one unit per chunk its edge goes
+     * through, so the job doesn't complete while they're still queued. Walls the queue has already written cost
+     * nothing here.
+     */
+    public void addWalls(final int x1, final int z1, final int x2, final int z2, final int height) {
+        for (final long chunk : PerimeterWriter.getChunks(x1, z1, x2, z2)) {
+            add(new Walls(this.world, (int) (chunk >> 32), (int) chunk, height));
+        }
+    }
+
+    /**
+     * Like addTemplate, but only writes what differs: each chunk is snapshotted on the main thread, compared with its
+     * template on a worker thread, and only the blocks which changed are set, in units like any other.
+     */
+    public void addTemplateDiff(final ClassicChunkBuilder builder, final int x1, final int z1, final int x2, final int z2) {
+        final int height = this.world.getMaxHeight();
+        for (int x = x1; x < x2; x = (x & ~15) + 16) {
+            final int endX = Math.min(x2, (x & ~15) + 16);
+            for (int z = z1; z < z2; z = (z & ~15) + 16) {
+                final int endZ = Math.min(z2, (z & ~15) + 16);
+                add(new ChunkDiff(this, builder.getTemplate(x >> 4, z >> 4), x, z, endX, endZ, height));
+            }
+        }
+    }
+
+    /**
+     * Take the next unit, or null if there is nothing left to do (main thread only)
+     */
+    WorkUnit poll() {
+        if (this.cancelled || (this.asyncFailure != null)) {
+            return null;
+        }
+        WorkUnit unit;
+        while ((unit = this.arrived.poll()) != null) {
+            this.units.add(unit);
+        }
+        return this.units.poll();
+    }
+
+    /**
+     * Check if there is anything left to run or wait for
+     */
+    boolean hasNext() {
+        if (this.cancelled || (this.asyncFailure != null)) {
+            return false;
+        }
+        // pending is read first - units arrive before it is decremented
+        return (this.pending.get() > 0) || !this.arrived.isEmpty() || !this.units.isEmpty();
+    }
+
+    /**
+     * A unit has been applied
+     */
+    void complete(final WorkUnit unit) {
+        this.done += unit.blocks;
+    }
+
+    /**
+     * The last unit has been applied, or the job was cancelled or failed - wake anything waiting and run the
+     * listeners
+     */
+    void finish(final Throwable failure) {
+        final ArrayList<Runnable> listeners;
+        synchronized (this) {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+            this.failure = failure != null ? failure : this.asyncFailure;
+            this.units.clear();
+            listeners = new ArrayList<Runnable>(this.listeners);
+            this.listeners.clear();
+            notifyAll();
+        }
+        for (final Runnable listener : listeners) {
+            run(listener);
+        }
+    }
+
+    private void run(final Runnable listener) {
+        try {
+            listener.run();
+        } catch (final RuntimeException e) {
+            Bukkit.getLogger().log(Level.WARNING, "A listener of plot work in " + this.world.getName() + " failed", e);
+        }
+    }
+
+    /**
+     * Run something once this job has finished (right away if it already has). Listeners run on the main thread.
+     */
+    public void addListener(final Runnable listener) {
+        synchronized (this) {
+            if (!this.finished) {
+                this.listeners.add(listener);
+                return;
+            }
+        }
+        run(listener);
+    }
+
+    /**
+     * Blocks set so far
+     */
+    public long getDone() {
+        return this.done;
+    }
+
+    /**
+     * Blocks to set in total - this grows as chunk diffs come back
+     */
+    public long getTotal() {
+        return this.total.get();
+    }
+
+    /**
+     * Fraction (0 - 1) of the job which is done
+     */
+    public double getProgress() {
+        final long total = this.total.get();
+        return total == 0 ? (this.finished ? 1 : 0) : (double) this.done / total;
+    }
+
+    /**
+     * Check if the job ran to the end (not cancelled, and no unit failed)
+     */
+    public synchronized boolean isSuccessful() {
+        return this.finished && !this.cancelled && (this.failure == null);
+    }
+
+    /**
+     * Stop the job after the unit being applied (if any). Listeners run when the work queue drops it.
+     */
+    @Override
+    public synchronized boolean cancel(final boolean mayInterruptIfRunning) {
+        if (this.finished || this.cancelled) {
+            return false;
+        }
+        this.cancelled = true;
+        notifyAll();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return this.finished || this.cancelled;
+    }
+
+    @Override
+    public synchronized Void get() throws InterruptedException, ExecutionException {
+        while (!isDone()) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized Void get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        final long end = System.nanoTime() + unit.toNanos(timeout);
+        while (!isDone()) {
+            final long left = end - System.nanoTime();
+            if (left <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return result();
+    }
+
+    private Void result() throws ExecutionException {
+        if (this.cancelled) {
+            throw new CancellationException();
+        }
+        if (this.failure != null) {
+            throw new ExecutionException(this.failure);
+        }
+        return null;
+    }
+
+    /**
+     * The walls still queued in one chunk, written right away
+     */
+    private static class Walls extends WorkUnit {
+        private final World world;
+        private final int cx, cz;
+
+        private Walls(final World world, final int cx, final int cz, final int height) {
+            // At most a chunk's edge of wall
+            super(32 * height);
+            this.world = world;
+            this.cx = cx;
+            this.cz = cz;
+        }
+
+        @Override
+        public void run() {
+            WallQueue.get(this.world).flush(this.cx << 4, this.cz << 4, (this.cx << 4) + 15, (this.cz << 4) + 15);
+        }
+    }
+
+    /**
+     * What the Template units of one chunk share: the sink they write through
+     */
+    private static class TemplateChunk {
+        private final BukkitBlockSink sink;
+        private final int cx, cz;
+
+        private TemplateChunk(final World world, final int cx, final int cz) {
+            this.sink = new BukkitBlockSink(world);
+            this.cx = cx;
+            this.cz = cz;
+        }
+    }
+
+    /**
+     * Part of a chunk (one chunk at most) set from its template
+     */
+    private static class Template extends WorkUnit {
+        private final TemplateChunk chunk;
+        private final ChunkTemplate template;
+        private final int x1, y1, z1, x2, y2, z2;
+
+        private Template(final TemplateChunk chunk, final ChunkTemplate template, final int x1, final int y1, final int z1, final int x2, final int y2, final int z2) {
+            super((x2 - x1) * (y2 - y1) * (z2 - z1));
+            this.chunk = chunk;
+            this.template = template;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.z1 = z1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.z2 = z2;
+        }
+
+        @Override
+        public void run() {
+            // Which sections are empty is looked up when the unit runs - the chunk may have changed since an earlier
+            // unit of it ran (a tick or more ago)
+            boolean[] empty = null;
+            for (int y = this.y1; y < this.y2; y++) {
+                final int section = y >> 4;
+                final CompactSection ids = section < this.template.sections.length ? this.template.sections[section] : null;
+                if (ids == null) {
+                    if (empty == null) {
+                        empty = this.chunk.sink.getEmptySections(this.chunk.cx, this.chunk.cz);
+                    }
+                    // This section should be air - skip it if it already is (nothing here writes anything but air to it)
+                    if ((section < empty.length) && empty[section]) {
+                        y = (section << 4) + 15;
+                        continue;
+                    }
+                }
+                final byte[] data = section < this.template.data.length ? this.template.data[section] : null;
+                for (int x = this.x1; x < this.x2; x++) {
+                    for (int z = this.z1; z < this.z2; z++) {
+                        final int i = ((y & 0xF) << 8) | ((z & 0xF) << 4) | (x & 0xF);
+                        final short id = ids == null ? 0 : ids.get(i);
+                        final byte val = data == null ? 0 : (byte) ((data[i >> 1] >> ((i & 1) << 2)) & 0xF);
+                        this.chunk.sink.setBlock(x, y, z, id, val);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.empcraft.classic;
+
+import com.intellectualcrafters.plot.PlotMain;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+/**
+ * Runs WorkJobs on the main thread, a few units at a time. Every tick it runs units until its time budget is used
+ * (always at least one, so jobs keep moving), taking one unit from each job in turn so a small plot isn't stuck
+ * behind a huge one. The budget shrinks when the server falls behind 20 TPS. The ticking task only exists while there
+ * is work queued.
+ */
+public class WorkQueue implements Runnable {
+    private static final long TICK = 50000000L;
+
+    private static Plugin plugin;
+    private static long budget = 10000000L;
+    private static int unitBlocks = 4096;
+    private static WorkQueue queue;
+    private static ExecutorService executor;
+
+    private final ArrayDeque<WorkJob> jobs = new ArrayDeque<WorkJob>();
+    private int task = -1;
+    private long lastTick;
+    private double tickLength = TICK;
+
+    /**
+     * Set the plugin to schedule with, the time (ms) which can be spent each tick, and the most blocks in one unit
+     */
+    public static void configure(final Plugin plugin, final int budgetMs, final int unitBlocks) {
+        WorkQueue.plugin = plugin;
+        WorkQueue.budget = Math.max(1, budgetMs) * 1000000L;
+        WorkQueue.unitBlocks = Math.max(256, unitBlocks);
+    }
+
+    public static int getUnitBlocks() {
+        return unitBlocks;
+    }
+
+    /**
+     * Get the threads which work is handed off to (e.g. diffing chunk snapshots)
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "Classic plot work");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Queue a job (main thread only). Returns the job, which is also the handle for its progress.
+     */
+    public static WorkJob submit(final WorkJob job) {
+        if (queue == null) {
+            queue = new WorkQueue();
+        }
+        queue.jobs.add(job);
+        if (queue.task == -1) {
+            queue.lastTick = 0;
+            queue.task = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin != null ? plugin : PlotMain.getMain(), queue, 1L, 1L);
+        }
+        return job;
+    }
+
+    /**
+     * Run everything still queued right away (e.g. when the plugin is disabled)
+     */
+    public static void flush() {
+        if (queue != null) {
+            while (!queue.jobs.isEmpty()) {
+                if (!queue.step()) {
+                    // Waiting for worker threads
+                    try {
+                        Thread.sleep(1);
+                    } catch (final InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+            queue.stop();
+        }
+        synchronized (WorkQueue.class) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    /**
+     * The time which can be spent this tick - all of it at 19 TPS or more, down to a tenth of it at 10 TPS
+     */
+    private long getBudget() {
+        final double tps = Math.min(20, 1000000000.0 / this.tickLength);
+        final double fraction = Math.max(0.1, Math.min(1, (tps - 10) / 9));
+        return (long) (budget * fraction);
+    }
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        if (this.lastTick != 0) {
+            this.tickLength += ((start - this.lastTick) - this.tickLength) * 0.2;
+        }
+        this.lastTick = start;
+        final long end = start + getBudget();
+        // Stop early if every job is waiting for a worker thread
+        int idle = 0;
+        do {
+            idle = step() ? 0 : idle + 1;
+        } while (!this.jobs.isEmpty() && (idle < this.jobs.size()) && (System.nanoTime() < end));
+        if (this.jobs.isEmpty()) {
+            stop();
+        }
+    }
+
+    /**
+     * Run one unit of the next job, returns false if there wasn't one to run
+     */
+    private boolean step() {
+        final WorkJob job = this.jobs.poll();
+        if (job == null) {
+            return false;
+        }
+        final WorkUnit unit = job.poll();
+        if (unit != null) {
+            try {
+                unit.run();
+            } catch (final RuntimeException e) {
+                // Most likely the world went away - the rest of this job won't do any better
+                Bukkit.getLogger().log(Level.WARNING, "Plot work in " + job.world.getName() + " failed, dropping it", e);
+                job.finish(e);
+                return true;
+            }
+            job.complete(unit);
+        }
+        if (job.hasNext()) {
+            this.jobs.add(job);
+        } else {
+            job.finish(null);
+        }
+        return unit != null;
+    }
+
+    private void stop() {
+        if (this.task != -1) {
+            Bukkit.getScheduler().cancelTask(this.task);
+            this.task = -1;
+        }
+        this.tickLength = TICK;
+    }
+}
@@ -0,0 +1,17 @@
+package com.empcraft.classic;
+
+/**
+ * A piece of a WorkJob, small enough to run in one go on the main thread
+ */
+public abstract class WorkUnit {
+    /**
+     * Roughly how many blocks this unit changes (what the work queue sizes units by)
+     */
+    public final int blocks;
+
+    public WorkUnit(final int blocks) {
+        this.blocks = blocks;
+    }
+
+    public abstract void run();
+}
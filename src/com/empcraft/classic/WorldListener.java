@@ -0,0 +1,16 @@
+package com.empcraft.classic;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Drops what's kept for worlds which are unloaded
+ */
+public class WorldListener implements Listener {
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent event) {
+        ChunkTemplateCache.release(event.getWorld().getName());
+    }
+}
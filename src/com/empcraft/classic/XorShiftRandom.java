@@ -0,0 +1,30 @@
+package com.empcraft.classic;
+
+/**
+ * Faster sudo-random number generator than java.util.random. Not thread safe, so create one per generated chunk.
+ */
+public class XorShiftRandom {
+    private long state;
+
+    public XorShiftRandom(final long seed) {
+        this.state = seed;
+    }
+
+    public final long nextLong() {
+        final long a = this.state;
+        this.state = xorShift64(a);
+        return a;
+    }
+
+    public static long xorShift64(long a) {
+        a ^= (a << 21);
+        a ^= (a >>> 35);
+        a ^= (a << 4);
+        return a;
+    }
+
+    public final int random(final int n) {
+        final long r = ((nextLong() >>> 32) * n) >> 32;
+        return (int) r;
+    }
+}